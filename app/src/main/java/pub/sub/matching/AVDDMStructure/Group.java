@@ -1,25 +1,129 @@
 package pub.sub.matching.AVDDMStructure;
 
-import pub.sub.matching.Predicate;
-
-import java.util.ArrayList;
+import java.util.Arrays;
 
+/** The predicates of a group as parallel primitive arrays: low value, high value and the dense id of the subscription.
+ *  A sorted group keeps its predicates ordered by high value, descending, so that a scan for predicates that cover a value can stop at the first high value below it.
+ */
 public class Group {
     public int max;
     public int min;
-    public ArrayList<GroupPredicate> list;
-    public Group(int min, int max) {
-        this.list = new ArrayList();
+    public int[] lowValues = new int[4];
+    public int[] highValues = new int[4];
+    public int[] ids = new int[4]; //dense ids of the subscriptions
+    public int size;
+    private final boolean isSorted;
+
+    public Group(int min, int max, boolean isSorted) {
         this.min = min;
         this.max = max;
+        this.isSorted = isSorted;
+    }
+
+    public void add(int id, int lowValue, int highValue) {
+        if(size == ids.length){
+            lowValues = Arrays.copyOf(lowValues, size * 2);
+            highValues = Arrays.copyOf(highValues, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int index = isSorted ? firstBelow(highValue) : size;
+        System.arraycopy(lowValues, index, lowValues, index + 1, size - index);
+        System.arraycopy(highValues, index, highValues, index + 1, size - index);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        lowValues[index] = lowValue;
+        highValues[index] = highValue;
+        ids[index] = id;
+        size++;
+    }
+
+    /** Appends the predicate without keeping the order. Used by bulk loads, which sort a sorted group afterwards. */
+    public void append(int id, int lowValue, int highValue) {
+        if(size == ids.length){
+            lowValues = Arrays.copyOf(lowValues, size * 2);
+            highValues = Arrays.copyOf(highValues, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        lowValues[size] = lowValue;
+        highValues[size] = highValue;
+        ids[size] = id;
+        size++;
+    }
+
+    /** Restores the order of a sorted group after appends. Does nothing for an unsorted group. */
+    public void sort() {
+        if(!isSorted){
+            return;
+        }
+        long[] order = new long[size]; //high value and index, so that sorting them gives the permutation
+        for(int i = 0; i < size; i++){
+            order[i] = ((long) highValues[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        int[] sortedLowValues = new int[lowValues.length];
+        int[] sortedHighValues = new int[highValues.length];
+        int[] sortedIds = new int[ids.length];
+        for(int i = 0; i < size; i++){
+            int from = (int) order[size - 1 - i]; //descending
+            sortedLowValues[i] = lowValues[from];
+            sortedHighValues[i] = highValues[from];
+            sortedIds[i] = ids[from];
+        }
+        lowValues = sortedLowValues;
+        highValues = sortedHighValues;
+        ids = sortedIds;
     }
 
-    public static class GroupPredicate extends Predicate{
-        public int subId;
+    /** Removes the predicate of the given subscription. An unsorted group moves its last predicate into the place, a sorted group shifts the following ones.
+     *  A sorted group only scans the predicates with the same high value, found by binary search. */
+    public void remove(int id, int highValue) {
+        int from = isSorted ? firstAtOrBelow(highValue) : 0;
+        for(int i = from; i < size; i++){
+            if(isSorted && highValues[i] != highValue){
+                return;
+            }
+            if(ids[i] == id){
+                size--;
+                if(isSorted){
+                    System.arraycopy(lowValues, i + 1, lowValues, i, size - i);
+                    System.arraycopy(highValues, i + 1, highValues, i, size - i);
+                    System.arraycopy(ids, i + 1, ids, i, size - i);
+                }else{
+                    lowValues[i] = lowValues[size];
+                    highValues[i] = highValues[size];
+                    ids[i] = ids[size];
+                }
+                return;
+            }
+        }
+    }
+
+    /** Returns the index of the first high value that is smaller than or equal to the given value, or size if there is none. Only for sorted groups. */
+    private int firstAtOrBelow(int value) {
+        int low = 0;
+        int high = size;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(highValues[mid] > value){
+                low = mid + 1;
+            }else{
+                high = mid;
+            }
+        }
+        return low;
+    }
 
-        public GroupPredicate(Predicate pred, int subId){
-            super(pred.attribute, pred.lowValue, pred.highValue);
-            this.subId = subId;
+    /** Returns the index of the first high value that is smaller than the given value, or size if there is none. Only for sorted groups. */
+    private int firstBelow(int value) {
+        int low = 0;
+        int high = size;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(highValues[mid] >= value){
+                low = mid + 1;
+            }else{
+                high = mid;
+            }
         }
+        return low;
     }
 }
@@ -15,12 +15,16 @@ public class App {
      **/
     public static void main(String[] args) {
         System.out.println("Starting evaluation...");
-        ArrayList<String> algos = new ArrayList(List.of("linear", "linear-string", "maema", "gem", "avddm"));
+        ArrayList<String> algos = new ArrayList(List.of("linear", "linear-string", "linear-columnar", "linear-simd", "maema", "rein", "gem", "avddm"));
         //ArrayList<String> algos = new ArrayList(List.of("linear-string", "linear", "gem")); //two versions of linear vs the best algo for defautl config
         //ArrayList<String> algos = new ArrayList(List.of("linear"));
+        //ArrayList<String> algos = new ArrayList(List.of("gem", "sharded-gem", "maema", "sharded-maema")); //single core vs NBR_SHARDS cores
+        //ArrayList<String> algos = new ArrayList(List.of("linear", "linear-simd")); //scalar vs vectorized linear, run with runTime2Subs and runTime2SubPreds in TestSuite
         for(String algo : algos){
             TestSuite.runTestSuitWithAlgo(App::isolatedEvaluation, algo);
         }
+        //TestSuite.runLargeEventsComparison(App::isolatedEvaluation); //"betree" vs "gem" and "maema" with a growing number of event attributes
+        //TestSuite.runApproximationComparison(App::isolatedEvaluation); //"tama" vs "tama-approx" with a growing number of levels, see FALSE_POSITIVE_RATE in matching_times.csv
     }
 
     /** An evaluation that uses a specified configuration and algo, evaluates and prints the result as a csv
@@ -29,11 +33,11 @@ public class App {
         matchingResult = isolatedEvaluationOfMatching(config, algo);
         insertionResult = isolatedEvaluationOfInsertion(config, algo);
         //If a result should be exluded - switch to an empty result below
-        //matchingResult = new Result(new Long[0], new Long[0], new Long[0], new Long[0], new ArrayList<>(), null);
-        //insertionResult = new Result(new Long[0], new Long[0], new Long[0], null, null, null);
+        //matchingResult = new Result(new Long[0], new Long[0], new Long[0], new Long[0], new ArrayList<>(), null, new Long[0]);
+        //insertionResult = new Result(new Long[0], new Long[0], new Long[0], null, null, null, new Long[0]);
         /* Output results */
         try {
-            TestSuite.printToCSV(experiment, algo, config, insertionResult.precomputationTimes, insertionResult.memoryConsumption, insertionResult.insertionTimes, matchingResult.matchingTimes, matchingResult.matchedSubs, matchingResult.matchabilities);
+            TestSuite.printToCSV(experiment, algo, config, insertionResult.precomputationTimes, insertionResult.memoryConsumption, insertionResult.insertionTimes, insertionResult.removalTimes, matchingResult.matchingTimes, matchingResult.matchedSubs, matchingResult.matchabilities, matchingResult.falsePositiveRates);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -46,6 +50,7 @@ public class App {
         Long[] insertionTimes = new Long[totalTestRuns];
         Long[] precomputationTimes = new Long[totalTestRuns];
         Long[] memoryConsumption = new Long[totalTestRuns];
+        Long[] removalTimes = new Long[totalTestRuns];
 
         MatchingAlgo matcher;
         /* PERFORM INSERTION TEST (NBR_EVENTS) nbr of time  */
@@ -64,10 +69,14 @@ public class App {
             matcher = Generator.createMatchingAlgo(config, algo);
 
             //INSERT
-            //Measure precomputation
+            //Measure precomputation, all subs except the last are inserted in bulk if BULK_INSERT is set, else one by one
             long startTime = System.nanoTime();
-            for (int sub_ind = 0; sub_ind < config.NBR_SUBS - 1; sub_ind++) {
-                matcher.insert(subs[sub_ind]);
+            if(config.BULK_INSERT){
+                matcher.insertAll(Arrays.copyOf(subs, config.NBR_SUBS - 1));
+            }else{
+                for (int sub_ind = 0; sub_ind < config.NBR_SUBS - 1; sub_ind++) {
+                    matcher.insert(subs[sub_ind]);
+                }
             }
             //Measure Insertion times
             long endTimeBeforeLast = System.nanoTime();
@@ -79,20 +88,30 @@ public class App {
             long memoryAfter = rt.freeMemory();
             long memoryConsumptionAfter = memoryAfterTotal - memoryAfter;
 
+            //REMOVE
+            //Measure the time to remove all subscriptions, i.e. the removal throughput
+            long startTimeRemoval = System.nanoTime();
+            for (int sub_ind = 0; sub_ind < config.NBR_SUBS; sub_ind++) {
+                matcher.remove(subs[sub_ind].id);
+            }
+            long endTimeRemoval = System.nanoTime();
+
             //Add results
             memoryConsumption[test_nbr] = (memoryConsumptionAfter - memoryConsumptionBefore);
             precomputationTimes[test_nbr] = (endTimeBeforeLast - startTime);
             insertionTimes[test_nbr] = (endTimeAfterLast - endTimeBeforeLast);
+            removalTimes[test_nbr] = (endTimeRemoval - startTimeRemoval);
         }
-        System.out.println("runInsertionWithAlgo done");
+        System.out.println("runInsertionWithAlgo done, precomputation " + (config.BULK_INSERT ? "with insertAll" : "with sequential insert"));
 
-        return new Result(precomputationTimes, memoryConsumption, insertionTimes, null, null, null);
+        return new Result(precomputationTimes, memoryConsumption, insertionTimes, null, null, null, removalTimes);
     }
 
     static Result isolatedEvaluationOfMatching(Config config, String algo) {
         /* SETUP FOR MEASUREMENTS */
         Long[] matchingTimes = new Long[config.NBR_EVENTS];
         Float[] eventMatchabilities = new Float[config.NBR_EVENTS];
+        Float[] falsePositiveRates = new Float[config.NBR_EVENTS];
         List<List<Subscription>> matchedSubs = new ArrayList<>();
 
         /* GENERATE DATA */
@@ -103,25 +122,71 @@ public class App {
         /* PERFORM TEST */
         MatchingAlgo matcher = Generator.createMatchingAlgo(config, algo);
 
-        //INSERT - measure precomputation time for all except last which will measure insertion time
+        //INSERT - one by one, so that the matching is measured on the structures that sequential insertion builds
         for(int i = 0; i < config.NBR_SUBS; i++){
             matcher.insert(subs[i]);
         }
         System.out.println("Insertion done");
 
+        //Convert the events to their primitive form once, as they would be when they arrive to the matching engine
+        for(Event event : events){
+            event.toPrimitive();
+        }
+
         //Matching
-        for(int i = 0; i < config.NBR_EVENTS; i++){
-            long startTime = System.nanoTime();
-            List<Subscription> matched = matcher.match(events[i]);
-            long endTime = System.nanoTime();
-            matchingTimes[i] = (endTime - startTime);
-            matchedSubs.add(matched);
-            float eventMatchability = matched.size() /(float) subs.length;
-            eventMatchabilities[i] = eventMatchability;
+        if(config.MATCH_BATCH_SIZE > 1){
+            //Each event in a batch is given the average matching time of the batch
+            for(int i = 0; i < config.NBR_EVENTS; i += config.MATCH_BATCH_SIZE){
+                Event[] batch = Arrays.copyOfRange(events, i, Math.min(i + config.MATCH_BATCH_SIZE, config.NBR_EVENTS));
+                long startTime = System.nanoTime();
+                List<List<Subscription>> matchedBatch = matcher.matchBatch(batch);
+                long endTime = System.nanoTime();
+                for(int j = 0; j < batch.length; j++){
+                    List<Subscription> matched = matchedBatch.get(j);
+                    matchingTimes[i + j] = (endTime - startTime) / batch.length;
+                    matchedSubs.add(matched);
+                    eventMatchabilities[i + j] = matched.size() /(float) subs.length;
+                }
+            }
+        }else{
+            for(int i = 0; i < config.NBR_EVENTS; i++){
+                long startTime = System.nanoTime();
+                List<Subscription> matched = matcher.match(events[i]);
+                long endTime = System.nanoTime();
+                matchingTimes[i] = (endTime - startTime);
+                matchedSubs.add(matched);
+                float eventMatchability = matched.size() /(float) subs.length;
+                eventMatchabilities[i] = eventMatchability;
+            }
         }
         System.out.println("Matching done");
 
-        return new Result(null, null,null, matchingTimes, matchedSubs, eventMatchabilities);
+        //False positives are counted after the matching, so they are not part of the matching times
+        for(int i = 0; i < config.NBR_EVENTS; i++){
+            falsePositiveRates[i] = falsePositiveRate(matchedSubs.get(i), events[i].toPrimitive());
+        }
+
+        return new Result(null, null,null, matchingTimes, matchedSubs, eventMatchabilities, falsePositiveRates, null);
+    }
+
+    /** Returns the share of the matched subs whose predicates the event does not fulfil. Subs with an expression instead of predicates are counted as correct. */
+    static float falsePositiveRate(List<Subscription> matched, PrimitiveEvent event) {
+        if(matched.isEmpty()){
+            return 0;
+        }
+        int falsePositives = 0;
+        for(Subscription sub : matched){
+            if(sub.predicates == null){
+                continue;
+            }
+            for(Predicate pred : sub.predicateArray()){
+                if(!event.contains(pred.attribute) || event.get(pred.attribute) < pred.lowValue || event.get(pred.attribute) > pred.highValue){
+                    falsePositives++;
+                    break;
+                }
+            }
+        }
+        return falsePositives / (float) matched.size();
     }
 
 }
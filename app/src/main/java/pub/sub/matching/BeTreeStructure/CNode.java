@@ -0,0 +1,98 @@
+package pub.sub.matching.BeTreeStructure;
+
+import pub.sub.matching.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A cluster node of BE-Tree. It covers a range of the value domain of the attribute of its PNode, and holds the subscriptions whose predicate on
+ *  that attribute lies within the range but not within one of its halves. The halves are the child clusters of the c-directory, created once the bucket overflows.
+ *  Like the root, a CNode can also partition its bucket further on other attributes with a p-directory of PNodes.
+ */
+public class CNode {
+    public final int lowValue;
+    public final int highValue;
+    public final PNode parentPNode; //null for the root
+    public final CNode parentCNode; //the cluster this is a half of, null at the top of a c-directory
+    public final List<Subscription> bucket = new ArrayList<>(); //the l-node
+    public final List<PNode> pDirectory = new ArrayList<>();
+    public CNode left; //lowValue to middle
+    public CNode right; //middle + 1 to highValue
+    public int bucketCapacity;
+    //The range of the predicates on the attribute of the c-directory of the subscriptions in the bucket and the p-directory. They all hold the middle of the range,
+    //so an event value outside it can skip them. The range only grows, and is kept after removals.
+    public int minLowValue = Integer.MAX_VALUE;
+    public int maxHighValue = Integer.MIN_VALUE;
+    /** Bitmask of the attributes of the PNodes on the path from the root to this CNode */
+    public final long[] pathAttributes;
+
+    /** The top of the c-directory of a PNode, over the whole value domain */
+    public CNode(PNode parentPNode, int valDom, int bucketCapacity) {
+        this.lowValue = 0;
+        this.highValue = valDom - 1;
+        this.parentPNode = parentPNode;
+        this.parentCNode = null;
+        long[] parentPathAttributes = parentPNode.parentCNode.pathAttributes;
+        this.pathAttributes = Arrays.copyOf(parentPathAttributes, Math.max(parentPathAttributes.length, (parentPNode.attribute >>> 6) + 1));
+        this.pathAttributes[parentPNode.attribute >>> 6] |= 1L << parentPNode.attribute;
+        this.bucketCapacity = bucketCapacity;
+    }
+
+    /** A half of the range of the parent cluster, with the same path attributes */
+    public CNode(CNode parentCNode, int lowValue, int highValue, int bucketCapacity) {
+        this.lowValue = lowValue;
+        this.highValue = highValue;
+        this.parentPNode = parentCNode.parentPNode;
+        this.parentCNode = parentCNode;
+        this.pathAttributes = parentCNode.pathAttributes;
+        this.bucketCapacity = bucketCapacity;
+    }
+
+    /** The root of a BE-Tree, over no attribute */
+    public CNode(int bucketCapacity) {
+        this.lowValue = 0;
+        this.highValue = 0;
+        this.parentPNode = null;
+        this.parentCNode = null;
+        this.pathAttributes = new long[0];
+        this.bucketCapacity = bucketCapacity;
+    }
+
+    public int middle() {
+        return (lowValue + highValue) >>> 1;
+    }
+
+    public boolean contains(int value) {
+        return value >= lowValue && value <= highValue;
+    }
+
+    public void widen(int lowValue, int highValue) {
+        minLowValue = Math.min(minLowValue, lowValue);
+        maxHighValue = Math.max(maxHighValue, highValue);
+    }
+
+    /** Whether the value is within the range of the predicates stored in the bucket and the p-directory */
+    public boolean isCovering(int value) {
+        return value >= minLowValue && value <= maxHighValue;
+    }
+
+    public boolean isInPath(int attribute) {
+        return (attribute >>> 6) < pathAttributes.length && (pathAttributes[attribute >>> 6] & (1L << attribute)) != 0;
+    }
+
+    /** A CNode without subscriptions, partitions or child clusters can be removed from the tree. */
+    public boolean isEmpty() {
+        return bucket.isEmpty() && pDirectory.isEmpty() && left == null && right == null;
+    }
+
+    /** Returns the PNode of the attribute, or null if there is none */
+    public PNode getPNode(int attribute) {
+        for(PNode pNode : pDirectory){
+            if(pNode.attribute == attribute){
+                return pNode;
+            }
+        }
+        return null;
+    }
+}
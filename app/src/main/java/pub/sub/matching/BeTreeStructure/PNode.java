@@ -0,0 +1,17 @@
+package pub.sub.matching.BeTreeStructure;
+
+/** A partition node of BE-Tree. It partitions the subscriptions of its parent CNode on one attribute: all subscriptions below it have a predicate on the attribute.
+ *  Its c-directory clusters those subscriptions by the range of that predicate, starting with a CNode over the whole value domain.
+ */
+public class PNode {
+    public final int attribute;
+    public final CNode parentCNode;
+    public final CNode cluster; //the top of the c-directory, over the whole value domain
+    public int nbrSubs; //subscriptions stored anywhere below this PNode
+
+    public PNode(int attribute, CNode parentCNode, int valDom, int bucketCapacity) {
+        this.attribute = attribute;
+        this.parentCNode = parentCNode;
+        this.cluster = new CNode(this, valDom, bucketCapacity);
+    }
+}
@@ -0,0 +1,95 @@
+package pub.sub.matching;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/** Makes any algorithm safe for many matching threads while subscriptions are inserted and removed, with the Left-Right technique.
+ *  Two replicas of the inner algorithm are kept. Readers match on the published replica without locks, while a writer applies the change to the other replica,
+ *  publishes it, waits for the readers of the old replica to leave, and then applies the same change to the old replica.
+ *  Readers thereby always see a consistent structure, e.g. never a GEM-Tree bucket in the middle of a split, and are never blocked by writers.
+ *  Writers are serialized, and each change is applied twice, so the cost is twice the memory and insertion time of the inner algorithm.
+ */
+public class ConcurrentMatchingAlgo implements MatchingAlgo {
+    private final MatchingAlgo[] replicas = new MatchingAlgo[2];
+    private volatile int readIndex; //the replica that new readers match on
+    private volatile int versionIndex; //the reader counter that new readers register in
+    private final AtomicInteger[] readers = {new AtomicInteger(), new AtomicInteger()}; //versionIndex -> number of readers inside
+    private final Object writeLock = new Object();
+
+    public ConcurrentMatchingAlgo(Supplier<MatchingAlgo> createReplica) {
+        replicas[0] = createReplica.get();
+        replicas[1] = createReplica.get();
+    }
+
+    @Override
+    public List<Subscription> match(Event event) {
+        return read(replica -> replica.match(event));
+    }
+
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        int version = versionIndex;
+        readers[version].incrementAndGet();
+        try {
+            replicas[readIndex].match(event, sink);
+        } finally {
+            readers[version].decrementAndGet();
+        }
+    }
+
+    @Override
+    public List<List<Subscription>> matchBatch(Event[] events) {
+        return read(replica -> replica.matchBatch(events));
+    }
+
+    @Override
+    public void insert(Subscription sub) {
+        write(replica -> replica.insert(sub));
+    }
+
+    @Override
+    public void insertAll(Subscription[] subs) {
+        write(replica -> replica.insertAll(subs));
+    }
+
+    @Override
+    public void remove(int subId) {
+        write(replica -> replica.remove(subId));
+    }
+
+    private <T> T read(Function<MatchingAlgo, T> operation) {
+        int version = versionIndex;
+        readers[version].incrementAndGet();
+        try {
+            return operation.apply(replicas[readIndex]);
+        } finally {
+            readers[version].decrementAndGet();
+        }
+    }
+
+    /** Applies the change to the replica that is not read, publishes it, and applies the change to the other replica once its last reader has left. */
+    private void write(Consumer<MatchingAlgo> change) {
+        synchronized (writeLock){
+            int oldIndex = readIndex;
+            change.accept(replicas[1 - oldIndex]);
+            readIndex = 1 - oldIndex;
+
+            //Readers that registered before the switch may still read the old replica. Switch the counter new readers use, and wait for both counters to drain
+            int oldVersion = versionIndex;
+            waitForReaders(readers[1 - oldVersion]);
+            versionIndex = 1 - oldVersion;
+            waitForReaders(readers[oldVersion]);
+
+            change.accept(replicas[oldIndex]);
+        }
+    }
+
+    private static void waitForReaders(AtomicInteger readerCount) {
+        while(readerCount.get() != 0){
+            Thread.onSpinWait();
+        }
+    }
+}
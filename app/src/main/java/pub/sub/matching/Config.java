@@ -31,6 +31,15 @@ public class Config {
      *  width = (pred.high-pred.low)/valuedomain. En example if the value domain for price is 100k and a normal predicate is price < 50k. Then the width becomes 0.5 */
     double WIDTH;
 
+    /** The number of events that are matched together with matchBatch in an evaluation. At 1 or less, each event is matched by itself. */
+    int MATCH_BATCH_SIZE;// = 1;
+
+    /** The number of shards that the subscriptions are spread over by the sharded algorithms, e.g. "sharded-gem". At 0, the number of available cores is used. */
+    int NBR_SHARDS;// = 0;
+
+    /** If the insertion evaluation inserts all subscriptions but the last with insertAll instead of one by one. The matching evaluation always inserts one by one. */
+    boolean BULK_INSERT;// = true;
+
     /** The seed used for random generation of data */
     long RANDOM_SEED;// = 0;
 
@@ -50,6 +59,9 @@ public class Config {
     /** A number used by GEM-Tree for how much a bucket should be extended if no split. */
     double GEMTree_INCREASE_BUCKET_SIZE_FACTOR;// = 1.1; //Assumption: Figure out how large
 
+    /** The number of levels below the first in the value tables of TAMA. Fewer levels give wider cells, and more false positives in "tama-approx". */
+    int TAMA_NBR_LEVELS;// = 10;
+
     public Config(int NBR_SUBS, int NBR_EVENTS, int NBR_TOTAL_ATTRIBUTES, int NBR_SUB_PREDICATES, int NBR_EVENT_ATTRIBUTES, int VAL_DOM, int MAEMA_MAX_NUMBER_BUCKETS, double GEMTree_ALPHA, double WIDTH, long RANDOM_SEED, int GEMTree_NBR_CELLS, int GEMTree_SPLIT_THRESHOLD, double GEMTree_INCREASE_BUCKET_SIZE_FACTOR){
         this.NBR_SUBS = NBR_SUBS;
         this.NBR_EVENTS = NBR_EVENTS;
@@ -82,9 +94,13 @@ public class Config {
         config.WIDTH = 0.2; //default: 0.5
         config.MAEMA_MAX_NUMBER_BUCKETS = 500;
         config.RANDOM_SEED = 0;
+        config.MATCH_BATCH_SIZE = 1;
+        config.NBR_SHARDS = 0; //number of cores
+        config.BULK_INSERT = true;
         config.GEMTree_NBR_CELLS = 8;
         config.GEMTree_SPLIT_THRESHOLD = 2;
         config.GEMTree_INCREASE_BUCKET_SIZE_FACTOR = 1.1; //Assumption: Figure out how large
+        config.TAMA_NBR_LEVELS = 10; //cells of about 10 values
         return config;
     }
 
@@ -100,6 +116,7 @@ public class Config {
         config.VAL_DOM = 10;
         config.WIDTH = 0.5;
         config.GEMTree_NBR_CELLS = 3;
+        config.TAMA_NBR_LEVELS = 2;
         return config;
     }
 
@@ -117,6 +134,7 @@ public class Config {
         config.MAEMA_MAX_NUMBER_BUCKETS = 500;
         config.RANDOM_SEED = 0;
         config.GEMTree_NBR_CELLS = 8;
+        config.TAMA_NBR_LEVELS = 3; //cells of 2-3 values, so that "tama-approx" gives false positives
         return config;
     }
 
@@ -134,6 +152,7 @@ public class Config {
         config.MAEMA_MAX_NUMBER_BUCKETS = 500;
         config.RANDOM_SEED = 0;
         config.GEMTree_NBR_CELLS = 8;
+        config.TAMA_NBR_LEVELS = 8;
         return config;
     }
 
@@ -151,6 +170,7 @@ public class Config {
         config.MAEMA_MAX_NUMBER_BUCKETS = 500;
         config.RANDOM_SEED = 0;
         config.GEMTree_NBR_CELLS = 8;
+        config.TAMA_NBR_LEVELS = 8;
         return config;
     }
 
@@ -171,14 +191,30 @@ public class Config {
         this.NBR_SUB_PREDICATES = nbrSubPredicates;
     }
 
+    public void setMATCH_BATCH_SIZE(int matchBatchSize) {
+        this.MATCH_BATCH_SIZE = matchBatchSize;
+    }
+
+    public void setNBR_SHARDS(int nbrShards) {
+        this.NBR_SHARDS = nbrShards;
+    }
+
+    public void setBULK_INSERT(boolean bulkInsert) {
+        this.BULK_INSERT = bulkInsert;
+    }
+
+    public void setTAMA_NBR_LEVELS(int nbrLevels) {
+        this.TAMA_NBR_LEVELS = nbrLevels;
+    }
+
     /** returns csv-formatted header-string of important attributes in config */
     public String toHeaderCSVString(){ //TODO: generalize based on list in toCSVString
-        return "Experiment;Algo;Time;NBR_SUBS;NBR_EVENTS;NBR_TOTAL_ATTRIBUTES;NBR_SUB_PREDICATES;NBR_EVENT_ATTRIBUTES;VAL_DOM;MAX_NUMBER_BUCKETS;ALPHA;WIDTH;RANDOM_SEED;NBR_CELLS;INIT_BUCKET_SIZE;SPLIT_THRESHOLD;INCREASE_BUCKET_SIZE_FACTOR; MATCHABILITY";
+        return "Experiment;Algo;Time;NBR_SUBS;NBR_EVENTS;NBR_TOTAL_ATTRIBUTES;NBR_SUB_PREDICATES;NBR_EVENT_ATTRIBUTES;VAL_DOM;MAX_NUMBER_BUCKETS;ALPHA;WIDTH;RANDOM_SEED;NBR_CELLS;INIT_BUCKET_SIZE;SPLIT_THRESHOLD;INCREASE_BUCKET_SIZE_FACTOR;TAMA_NBR_LEVELS;BULK_INSERT;MATCH_BATCH_SIZE; MATCHABILITY;FALSE_POSITIVE_RATE";
     }
 
     /** returns csv-formatted config-string of important attributes in config */
     public String toCSVString() {
-        Collection<Object> listOfConfigs = Arrays.asList(NBR_SUBS, NBR_EVENTS, NBR_TOTAL_ATTRIBUTES, NBR_SUB_PREDICATES, NBR_EVENT_ATTRIBUTES, VAL_DOM, MAEMA_MAX_NUMBER_BUCKETS, GEMTree_ALPHA, WIDTH, RANDOM_SEED, GEMTree_NBR_CELLS, GEMTree_SPLIT_THRESHOLD, GEMTree_INCREASE_BUCKET_SIZE_FACTOR);
+        Collection<Object> listOfConfigs = Arrays.asList(NBR_SUBS, NBR_EVENTS, NBR_TOTAL_ATTRIBUTES, NBR_SUB_PREDICATES, NBR_EVENT_ATTRIBUTES, VAL_DOM, MAEMA_MAX_NUMBER_BUCKETS, GEMTree_ALPHA, WIDTH, RANDOM_SEED, GEMTree_NBR_CELLS, GEMTree_SPLIT_THRESHOLD, GEMTree_INCREASE_BUCKET_SIZE_FACTOR, TAMA_NBR_LEVELS, BULK_INSERT, MATCH_BATCH_SIZE);
         return listOfConfigs.stream().map(Object::toString).collect(Collectors.joining(";")); //-> "nbr_events; nbr_subscribers"
     }
 }
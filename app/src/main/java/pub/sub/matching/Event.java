@@ -5,6 +5,7 @@ import java.util.Map;
 
 public class Event {
     public HashMap<Integer, Integer> attributeValuePairs;
+    private PrimitiveEvent primitiveEvent;
 
     public Event(){
         attributeValuePairs = new HashMap<>();
@@ -12,5 +13,15 @@ public class Event {
 
     void add(int attribute, int value){
         attributeValuePairs.put(attribute, value);
+        primitiveEvent = null;
+    }
+
+    /** Returns the array-backed form of the event that the algorithms match against.
+     *  It is created once and kept, so an event should be converted when it arrives rather than on every match. */
+    public PrimitiveEvent toPrimitive(){
+        if(primitiveEvent == null){
+            primitiveEvent = new PrimitiveEvent(attributeValuePairs);
+        }
+        return primitiveEvent;
     }
 }
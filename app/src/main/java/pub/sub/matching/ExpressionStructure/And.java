@@ -0,0 +1,31 @@
+package pub.sub.matching.ExpressionStructure;
+
+import pub.sub.matching.PrimitiveEvent;
+
+/** All operands must be true. A false operand decides the result even if another operand is an error, so the order of the operands does not matter. */
+public class And implements Expression {
+    final Expression[] operands;
+
+    public And(Expression[] operands) {
+        this.operands = operands;
+    }
+
+    public Expression[] operands() {
+        return operands.clone();
+    }
+
+    @Override
+    public int evaluate(PrimitiveEvent event) {
+        int result = TRUE;
+        for(Expression operand : operands){
+            int value = operand.evaluate(event);
+            if(value == FALSE){
+                return FALSE;
+            }
+            if(value == ERROR){
+                result = ERROR;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,102 @@
+package pub.sub.matching.ExpressionStructure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** The boolean structure of an expression over the ids of its atoms in an AtomTable, in postfix order.
+ *  A non-negative code pushes the value of that atom, the negative codes are the operators. && and || are followed by their number of operands.
+ *  Evaluated over the AtomValues of an event, with the same three-valued logic as the Expression tree.
+ */
+public class AtomProgram {
+    private static final int NOT = -1;
+    private static final int AND = -2;
+    private static final int OR = -3;
+    private static final int TRUE = -4;
+    private static final int FALSE = -5;
+
+    private final int[] code;
+    private final int[] atomIds; //every interned atom, once per occurrence, to release them again
+    private final int maxStackSize;
+
+    private AtomProgram(int[] code, int[] atomIds, int maxStackSize) {
+        this.code = code;
+        this.atomIds = atomIds;
+        this.maxStackSize = maxStackSize;
+    }
+
+    /** Compiles the expression, interning its comparisons and ranges in the table. */
+    public static AtomProgram compile(Expression expression, AtomTable table) {
+        List<Integer> code = new ArrayList<>();
+        List<Integer> atomIds = new ArrayList<>();
+        int maxStackSize = compile(expression, table, code, atomIds, 0);
+        return new AtomProgram(code.stream().mapToInt(Integer::intValue).toArray(), atomIds.stream().mapToInt(Integer::intValue).toArray(), maxStackSize);
+    }
+
+    /** Appends the code of the expression and returns the largest stack size reached, given the size before it. */
+    private static int compile(Expression expression, AtomTable table, List<Integer> code, List<Integer> atomIds, int stackSize) {
+        if(expression instanceof And || expression instanceof Or){
+            Expression[] operands = expression instanceof And ? ((And) expression).operands : ((Or) expression).operands;
+            int maxStackSize = stackSize;
+            for(int i = 0; i < operands.length; i++){
+                maxStackSize = Math.max(maxStackSize, compile(operands[i], table, code, atomIds, stackSize + i));
+            }
+            code.add(expression instanceof And ? AND : OR);
+            code.add(operands.length);
+            return maxStackSize;
+        }
+        if(expression instanceof Not){
+            int maxStackSize = compile(((Not) expression).operand, table, code, atomIds, stackSize);
+            code.add(NOT);
+            return maxStackSize;
+        }
+        if(expression instanceof Constant){
+            code.add(((Constant) expression).value == Expression.TRUE ? TRUE : FALSE);
+            return stackSize + 1;
+        }
+        int id = table.intern(expression);
+        atomIds.add(id);
+        code.add(id);
+        return stackSize + 1;
+    }
+
+    /** Releases the atoms of the program in the table. The program must not be evaluated afterwards. */
+    public void release(AtomTable table) {
+        for(int id : atomIds){
+            table.release(id);
+        }
+    }
+
+    public int evaluate(AtomValues values) {
+        if(values.stack.length < maxStackSize){
+            values.stack = new int[maxStackSize];
+        }
+        int[] stack = values.stack;
+        int top = 0;
+        for(int pc = 0; pc < code.length; pc++){
+            int op = code[pc];
+            if(op >= 0){
+                stack[top++] = values.get(op);
+            }else if(op == NOT){
+                stack[top - 1] = stack[top - 1] == Expression.ERROR ? Expression.ERROR : Expression.TRUE - stack[top - 1];
+            }else if(op == AND || op == OR){
+                int nbrOperands = code[++pc];
+                int decisive = op == AND ? Expression.FALSE : Expression.TRUE;
+                int result = op == AND ? Expression.TRUE : Expression.FALSE;
+                for(int i = top - nbrOperands; i < top; i++){
+                    if(stack[i] == decisive){
+                        result = decisive;
+                        break;
+                    }
+                    if(stack[i] == Expression.ERROR){
+                        result = Expression.ERROR;
+                    }
+                }
+                top -= nbrOperands;
+                stack[top++] = result;
+            }else{
+                stack[top++] = op == TRUE ? Expression.TRUE : Expression.FALSE;
+            }
+        }
+        return stack[0];
+    }
+}
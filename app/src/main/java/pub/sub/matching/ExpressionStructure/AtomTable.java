@@ -0,0 +1,114 @@
+package pub.sub.matching.ExpressionStructure;
+
+import pub.sub.matching.PrimitiveEvent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** The distinct atoms, i.e. comparisons and ranges on one attribute, of the expressions of all subscriptions.
+ *  Each atom gets an id and a count of the programs that use it, and is dropped when no program uses it anymore, so that its id can be reused.
+ *  The atoms are also listed by attribute, so an event only evaluates the atoms of its own attributes. The others are errors.
+ */
+public class AtomTable {
+    private static final int[] NO_ATOMS = new int[0];
+
+    private final HashMap<Expression, Integer> ids = new HashMap<>(); //atom -> id
+    private Expression[] atoms = new Expression[64]; //id -> atom, null if the id is free
+    private int[] nbrUsers = new int[64]; //id -> number of programs using the atom
+    private int nbrIds; //ids that have been handed out
+    private int[] freeIds = new int[16];
+    private int nbrFreeIds;
+    private int[][] attributeAtoms = new int[0][]; //attribute -> ids of its atoms
+    private int[] nbrAttributeAtoms = new int[0];
+
+    /** Returns the id of the atom, adding it if no other program uses it yet. */
+    int intern(Expression atom) {
+        Integer id = ids.get(atom);
+        if(id != null){
+            nbrUsers[id]++;
+            return id;
+        }
+        if(nbrFreeIds > 0){
+            id = freeIds[--nbrFreeIds];
+        }else{
+            id = nbrIds++;
+            if(id == atoms.length){
+                atoms = Arrays.copyOf(atoms, id * 2);
+                nbrUsers = Arrays.copyOf(nbrUsers, id * 2);
+            }
+        }
+        ids.put(atom, id);
+        atoms[id] = atom;
+        nbrUsers[id] = 1;
+
+        int attribute = attributeOf(atom);
+        if(attribute >= attributeAtoms.length){
+            int newLength = Math.max(attribute + 1, attributeAtoms.length * 2);
+            int oldLength = attributeAtoms.length;
+            attributeAtoms = Arrays.copyOf(attributeAtoms, newLength);
+            nbrAttributeAtoms = Arrays.copyOf(nbrAttributeAtoms, newLength);
+            Arrays.fill(attributeAtoms, oldLength, newLength, NO_ATOMS);
+        }
+        if(nbrAttributeAtoms[attribute] == attributeAtoms[attribute].length){
+            attributeAtoms[attribute] = Arrays.copyOf(attributeAtoms[attribute], Math.max(4, nbrAttributeAtoms[attribute] * 2));
+        }
+        attributeAtoms[attribute][nbrAttributeAtoms[attribute]++] = id;
+        return id;
+    }
+
+    /** Called once for each intern of the atom, when the program that uses it is removed. */
+    void release(int id) {
+        if(--nbrUsers[id] > 0){
+            return;
+        }
+        Expression atom = atoms[id];
+        ids.remove(atom);
+        atoms[id] = null;
+        int attribute = attributeOf(atom);
+        int[] attributeIds = attributeAtoms[attribute];
+        for(int i = 0; i < nbrAttributeAtoms[attribute]; i++){
+            if(attributeIds[i] == id){
+                attributeIds[i] = attributeIds[--nbrAttributeAtoms[attribute]];
+                break;
+            }
+        }
+        if(nbrFreeIds == freeIds.length){
+            freeIds = Arrays.copyOf(freeIds, nbrFreeIds * 2);
+        }
+        freeIds[nbrFreeIds++] = id;
+    }
+
+    /** The number of distinct atoms in use */
+    public int size() {
+        return ids.size();
+    }
+
+    /** Evaluates every atom on an attribute of the event once, into the values. Atoms on other attributes are errors. */
+    public void evaluate(PrimitiveEvent event, AtomValues values) {
+        int nbrWords = (nbrIds + 63) >>> 6;
+        if(values.trueBits.length < nbrWords){
+            values.trueBits = new long[nbrWords];
+            values.errorBits = new long[nbrWords];
+        }
+        Arrays.fill(values.trueBits, 0, nbrWords, 0L);
+        Arrays.fill(values.errorBits, 0, nbrWords, -1L);
+        for(int i = 0; i < event.size(); i++){
+            int attribute = event.attributes[i];
+            if(attribute < 0 || attribute >= attributeAtoms.length){
+                continue;
+            }
+            int[] attributeIds = attributeAtoms[attribute];
+            for(int a = 0; a < nbrAttributeAtoms[attribute]; a++){
+                int id = attributeIds[a];
+                values.errorBits[id >>> 6] &= ~(1L << id);
+                if(atoms[id].evaluate(event) == Expression.TRUE){
+                    values.trueBits[id >>> 6] |= 1L << id;
+                }
+            }
+        }
+    }
+
+    private static int attributeOf(Expression atom) {
+        return atom instanceof Range ? ((Range) atom).attribute : ((Comparison) atom).attribute;
+    }
+}
@@ -0,0 +1,16 @@
+package pub.sub.matching.ExpressionStructure;
+
+/** The values of all atoms of an AtomTable for one event, as two bitsets indexed by atom id: true atoms and atoms whose attribute the event lacks (errors).
+ *  Also holds the stack that AtomPrograms are evaluated with. Reused for every event of a matching thread. */
+public class AtomValues {
+    long[] trueBits = new long[0];
+    long[] errorBits = new long[0];
+    int[] stack = new int[16];
+
+    int get(int atomId) {
+        if((errorBits[atomId >>> 6] & (1L << atomId)) != 0){
+            return Expression.ERROR;
+        }
+        return (trueBits[atomId >>> 6] & (1L << atomId)) != 0 ? Expression.TRUE : Expression.FALSE;
+    }
+}
@@ -0,0 +1,77 @@
+package pub.sub.matching.ExpressionStructure;
+
+import pub.sub.matching.PrimitiveEvent;
+
+import java.util.Objects;
+
+/** Compares the value of an attribute to a constant: attribute operator constant */
+public class Comparison implements Expression {
+    public static final int LESS = 0;
+    public static final int LESS_OR_EQUAL = 1;
+    public static final int GREATER = 2;
+    public static final int GREATER_OR_EQUAL = 3;
+    public static final int EQUAL = 4;
+    public static final int NOT_EQUAL = 5;
+
+    final int attribute;
+    final int operator;
+    final long constant;
+
+    public Comparison(int attribute, int operator, long constant) {
+        this.attribute = attribute;
+        this.operator = operator;
+        this.constant = constant;
+    }
+
+    /** The operator that gives the same result with the operands swapped, e.g. 5 < attribute is attribute > 5 */
+    public static int swapped(int operator) {
+        switch (operator){
+            case LESS: return GREATER;
+            case LESS_OR_EQUAL: return GREATER_OR_EQUAL;
+            case GREATER: return LESS;
+            case GREATER_OR_EQUAL: return LESS_OR_EQUAL;
+            default: return operator;
+        }
+    }
+
+    /** Comparisons are equal if they compare the same attribute in the same way, so that identical atoms of different subscriptions can be shared. */
+    @Override
+    public boolean equals(Object o) {
+        if(!(o instanceof Comparison)){
+            return false;
+        }
+        Comparison other = (Comparison) o;
+        return attribute == other.attribute && operator == other.operator && constant == other.constant;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(attribute, operator, constant);
+    }
+
+    boolean isLowerBound() {
+        return operator == GREATER || operator == GREATER_OR_EQUAL;
+    }
+
+    boolean isUpperBound() {
+        return operator == LESS || operator == LESS_OR_EQUAL;
+    }
+
+    @Override
+    public int evaluate(PrimitiveEvent event) {
+        if(!event.contains(attribute)){
+            return ERROR;
+        }
+        long value = event.get(attribute);
+        boolean result;
+        switch (operator){
+            case LESS: result = value < constant; break;
+            case LESS_OR_EQUAL: result = value <= constant; break;
+            case GREATER: result = value > constant; break;
+            case GREATER_OR_EQUAL: result = value >= constant; break;
+            case EQUAL: result = value == constant; break;
+            default: result = value != constant; break;
+        }
+        return result ? TRUE : FALSE;
+    }
+}
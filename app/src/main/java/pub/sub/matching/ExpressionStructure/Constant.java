@@ -0,0 +1,17 @@
+package pub.sub.matching.ExpressionStructure;
+
+import pub.sub.matching.PrimitiveEvent;
+
+/** The literal true or false */
+public class Constant implements Expression {
+    final int value;
+
+    public Constant(boolean value) {
+        this.value = value ? TRUE : FALSE;
+    }
+
+    @Override
+    public int evaluate(PrimitiveEvent event) {
+        return value;
+    }
+}
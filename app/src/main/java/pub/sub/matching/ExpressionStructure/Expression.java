@@ -0,0 +1,15 @@
+package pub.sub.matching.ExpressionStructure;
+
+import pub.sub.matching.PrimitiveEvent;
+
+/** A compiled subscription expression that is evaluated straight on a primitive event.
+ *  Evaluation is three-valued like in cel: reading an attribute the event does not have is an error, which an && with a false operand or an || with a true operand absorbs.
+ *  An expression that evaluates to ERROR does not match, the same as when the cel script throws.
+ */
+public interface Expression {
+    int FALSE = 0;
+    int TRUE = 1;
+    int ERROR = 2;
+
+    int evaluate(PrimitiveEvent event);
+}
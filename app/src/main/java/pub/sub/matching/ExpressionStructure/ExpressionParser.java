@@ -0,0 +1,236 @@
+package pub.sub.matching.ExpressionStructure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Parses the subscription expression strings into Expressions, with the grammar:
+ *  <pre>
+ *  or         := and ('||' and)*
+ *  and        := unary ('&&' unary)*
+ *  unary      := '!' unary | '(' or ')' | 'true' | 'false' | comparison
+ *  comparison := operand ('<' | '<=' | '>' | '>=' | '==' | '!=') operand, one operand event.attributeValuePairs[N] and the other an integer
+ *  </pre>
+ *  Anything else, e.g. arithmetic, other fields or functions, throws an IllegalArgumentException so that the caller can use cel instead.
+ *  Lower and upper bounds on the same attribute in an && are joined into a Range.
+ */
+public class ExpressionParser {
+    private static final String ATTRIBUTE_PREFIX = "event.attributeValuePairs[";
+
+    private final String text;
+    private int position;
+
+    private ExpressionParser(String text) {
+        this.text = text;
+    }
+
+    public static Expression parse(String text) {
+        ExpressionParser parser = new ExpressionParser(text);
+        Expression expression = parser.parseOr();
+        parser.skipSpaces();
+        if(parser.position != text.length()){
+            throw parser.unsupported();
+        }
+        return expression;
+    }
+
+    /**
+     * Splits the text at its top-level &&, i.e. those outside of parentheses, brackets and string literals.
+     * If the text has a top-level || or ?: the && do not join the whole text, so it is returned as one part.
+     * Does not need the text to be parseable, so that the parts can be parsed one by one.
+     * @param text
+     * @return the conjuncts, trimmed
+     */
+    public static List<String> splitConjuncts(String text) {
+        List<String> conjuncts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for(int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if(c == '"' || c == '\''){
+                //skip the string literal, with its escaped characters
+                i++;
+                while(i < text.length() && text.charAt(i) != c){
+                    if(text.charAt(i) == '\\'){
+                        i++;
+                    }
+                    i++;
+                }
+            }else if(c == '(' || c == '[' || c == '{'){
+                depth++;
+            }else if(c == ')' || c == ']' || c == '}'){
+                depth--;
+            }else if(depth == 0 && (text.startsWith("||", i) || c == '?')){
+                return List.of(text.trim());
+            }else if(depth == 0 && text.startsWith("&&", i)){
+                conjuncts.add(text.substring(start, i).trim());
+                start = i + 2;
+                i++;
+            }
+        }
+        conjuncts.add(text.substring(start).trim());
+        return conjuncts;
+    }
+
+    private Expression parseOr() {
+        List<Expression> operands = new ArrayList<>();
+        operands.add(parseAnd());
+        while(accept("||")){
+            operands.add(parseAnd());
+        }
+        return operands.size() == 1 ? operands.get(0) : new Or(operands.toArray(new Expression[0]));
+    }
+
+    private Expression parseAnd() {
+        List<Expression> operands = new ArrayList<>();
+        operands.add(parseUnary());
+        while(accept("&&")){
+            operands.add(parseUnary());
+        }
+        joinRanges(operands);
+        return operands.size() == 1 ? operands.get(0) : new And(operands.toArray(new Expression[0]));
+    }
+
+    /** Replaces a lower and an upper bound comparison on the same attribute by one Range. Allowed since the result of an && does not depend on the order of its operands. */
+    public static void joinRanges(List<Expression> operands) {
+        for(int i = 0; i < operands.size(); i++){
+            if(!(operands.get(i) instanceof Comparison)){
+                continue;
+            }
+            Comparison first = (Comparison) operands.get(i);
+            for(int j = i + 1; j < operands.size(); j++){
+                if(!(operands.get(j) instanceof Comparison)){
+                    continue;
+                }
+                Comparison second = (Comparison) operands.get(j);
+                if(first.attribute != second.attribute || !isIntConstant(first) || !isIntConstant(second)){
+                    continue;
+                }
+                if(first.isLowerBound() && second.isUpperBound()){
+                    operands.set(i, new Range(first, second));
+                }else if(first.isUpperBound() && second.isLowerBound()){
+                    operands.set(i, new Range(second, first));
+                }else{
+                    continue;
+                }
+                operands.remove(j);
+                break;
+            }
+        }
+    }
+
+    private static boolean isIntConstant(Comparison comparison) {
+        return comparison.constant >= Integer.MIN_VALUE && comparison.constant <= Integer.MAX_VALUE;
+    }
+
+    private Expression parseUnary() {
+        if(accept("!")){
+            return new Not(parseUnary());
+        }
+        if(accept("(")){
+            Expression expression = parseOr();
+            expect(")");
+            return expression;
+        }
+        if(acceptWord("true")){
+            return new Constant(true);
+        }
+        if(acceptWord("false")){
+            return new Constant(false);
+        }
+        return parseComparison();
+    }
+
+    private Expression parseComparison() {
+        skipSpaces();
+        if(text.startsWith(ATTRIBUTE_PREFIX, position)){
+            int attribute = parseAttribute();
+            int operator = parseOperator();
+            return new Comparison(attribute, operator, parseInteger());
+        }
+        long constant = parseInteger();
+        int operator = parseOperator();
+        skipSpaces();
+        if(!text.startsWith(ATTRIBUTE_PREFIX, position)){
+            throw unsupported();
+        }
+        return new Comparison(parseAttribute(), Comparison.swapped(operator), constant);
+    }
+
+    private int parseAttribute() {
+        position += ATTRIBUTE_PREFIX.length();
+        long attribute = parseInteger();
+        expect("]");
+        if(attribute < 0 || attribute > Integer.MAX_VALUE){
+            throw unsupported();
+        }
+        return (int) attribute;
+    }
+
+    private int parseOperator() {
+        //the two character operators first, so that <= is not read as <
+        if(accept("<=")) return Comparison.LESS_OR_EQUAL;
+        if(accept(">=")) return Comparison.GREATER_OR_EQUAL;
+        if(accept("==")) return Comparison.EQUAL;
+        if(accept("!=")) return Comparison.NOT_EQUAL;
+        if(accept("<")) return Comparison.LESS;
+        if(accept(">")) return Comparison.GREATER;
+        throw unsupported();
+    }
+
+    /** Reads a decimal integer literal with an optional minus sign. Literals with a suffix, a decimal point or an exponent are not supported. */
+    private long parseInteger() {
+        skipSpaces();
+        int start = position;
+        if(position < text.length() && text.charAt(position) == '-'){
+            position++;
+        }
+        int digitsStart = position;
+        while(position < text.length() && Character.isDigit(text.charAt(position))){
+            position++;
+        }
+        if(position == digitsStart || (position < text.length() && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '.'))){
+            throw unsupported();
+        }
+        try {
+            return Long.parseLong(text.substring(start, position));
+        } catch (NumberFormatException e) {
+            throw unsupported();
+        }
+    }
+
+    private boolean accept(String token) {
+        skipSpaces();
+        if(text.startsWith(token, position)){
+            position += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    /** Like accept, but the word must not continue with another letter, digit or underscore */
+    private boolean acceptWord(String word) {
+        skipSpaces();
+        int end = position + word.length();
+        if(text.startsWith(word, position) && (end == text.length() || !(Character.isLetterOrDigit(text.charAt(end)) || text.charAt(end) == '_'))){
+            position = end;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if(!accept(token)){
+            throw unsupported();
+        }
+    }
+
+    private void skipSpaces() {
+        while(position < text.length() && Character.isWhitespace(text.charAt(position))){
+            position++;
+        }
+    }
+
+    private IllegalArgumentException unsupported() {
+        return new IllegalArgumentException("Unsupported expression at position " + position + ": " + text);
+    }
+}
@@ -0,0 +1,18 @@
+package pub.sub.matching.ExpressionStructure;
+
+import pub.sub.matching.PrimitiveEvent;
+
+/** Negates the operand. An error stays an error. */
+public class Not implements Expression {
+    final Expression operand;
+
+    public Not(Expression operand) {
+        this.operand = operand;
+    }
+
+    @Override
+    public int evaluate(PrimitiveEvent event) {
+        int value = operand.evaluate(event);
+        return value == ERROR ? ERROR : TRUE - value;
+    }
+}
@@ -0,0 +1,27 @@
+package pub.sub.matching.ExpressionStructure;
+
+import pub.sub.matching.PrimitiveEvent;
+
+/** At least one operand must be true. A true operand decides the result even if another operand is an error. */
+public class Or implements Expression {
+    final Expression[] operands;
+
+    public Or(Expression[] operands) {
+        this.operands = operands;
+    }
+
+    @Override
+    public int evaluate(PrimitiveEvent event) {
+        int result = FALSE;
+        for(Expression operand : operands){
+            int value = operand.evaluate(event);
+            if(value == TRUE){
+                return TRUE;
+            }
+            if(value == ERROR){
+                result = ERROR;
+            }
+        }
+        return result;
+    }
+}
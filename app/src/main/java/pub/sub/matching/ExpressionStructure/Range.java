@@ -0,0 +1,42 @@
+package pub.sub.matching.ExpressionStructure;
+
+import pub.sub.matching.PrimitiveEvent;
+
+import java.util.Objects;
+
+/** A lower and an upper bound on the same attribute that are joined by &&, e.g. attribute > 5 && attribute < 10, checked with one lookup of the attribute. */
+public class Range implements Expression {
+    public final int attribute;
+    public final long lowValue; //the smallest value that is inside the range
+    public final long highValue; //the largest value that is inside the range
+
+    /** Joins the lower and upper bound comparisons of an attribute */
+    public Range(Comparison lower, Comparison upper) {
+        this.attribute = lower.attribute;
+        this.lowValue = lower.operator == Comparison.GREATER ? lower.constant + 1 : lower.constant;
+        this.highValue = upper.operator == Comparison.LESS ? upper.constant - 1 : upper.constant;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(!(o instanceof Range)){
+            return false;
+        }
+        Range other = (Range) o;
+        return attribute == other.attribute && lowValue == other.lowValue && highValue == other.highValue;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(attribute, lowValue, highValue);
+    }
+
+    @Override
+    public int evaluate(PrimitiveEvent event) {
+        if(!event.contains(attribute)){
+            return ERROR;
+        }
+        long value = event.get(attribute);
+        return value >= lowValue && value <= highValue ? TRUE : FALSE;
+    }
+}
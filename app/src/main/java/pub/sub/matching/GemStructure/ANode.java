@@ -1,25 +1,100 @@
 package pub.sub.matching.GemStructure;
 
-import pub.sub.matching.MatchingAlgoGemTree;
 import pub.sub.matching.Subscription;
 
 import java.util.*;
 
+/** An ANode holds a bucket of subscriptions and an attribute directory of VNodes.
+ *  The directory and the attribute popularity are kept as primitive arrays that are only allocated once used, since most ANodes are leaves with a small bucket.
+ */
 public class ANode {
-    public Map<Integer, VNode> attributeDirectory;
+    private static final int[] NO_ATTRIBUTES = new int[0];
+    private static final VNode[] NO_VNODES = new VNode[0];
+
+    private int[] directoryAttributes = NO_ATTRIBUTES; //sorted attributes of the attribute directory
+    private VNode[] directoryVNodes = NO_VNODES; //the VNode of each attribute in directoryAttributes
+    private int directorySize;
     public VNode parentVNode;
     public List<Subscription> bucket;
     public int currentBucketCapacity;
-    HashMap<Integer, Integer> bucketAttributePopularity;
+    private int[] bucketAttributePopularity = NO_ATTRIBUTES; //attribute -> number of subs in the bucket with a predicate on it
+    /** Bitmask of the attributes of the VNodes on the path from the root to this ANode. Shared by all ANodes of a VNode and never changed. */
+    public final long[] pathAttributes;
 
     public ANode(int bucketSize, VNode vNode){
+        this.pathAttributes = vNode == null ? new long[0] : vNode.pathAttributes;
         this.currentBucketCapacity = bucketSize;
         this.bucket = new ArrayList<>();
-        this.attributeDirectory = new HashMap<>();
-        this.bucketAttributePopularity = new HashMap<>();
         this.parentVNode = vNode;
     }
 
+    /**
+     * @param attribute
+     * @return the VNode of the attribute in the attribute directory, null if there is none
+     */
+    public VNode getVNode(int attribute) {
+        int index = Arrays.binarySearch(directoryAttributes, 0, directorySize, attribute);
+        return index >= 0 ? directoryVNodes[index] : null;
+    }
+
+    /**
+     * Adds the VNode to the attribute directory, under its attribute.
+     * @param vNode
+     */
+    public void putVNode(VNode vNode) {
+        int index = Arrays.binarySearch(directoryAttributes, 0, directorySize, vNode.attribute);
+        if(index >= 0){
+            directoryVNodes[index] = vNode;
+            return;
+        }
+        index = -index - 1;
+        if(directorySize == directoryAttributes.length){
+            int newLength = Math.max(2, directorySize * 2);
+            directoryAttributes = Arrays.copyOf(directoryAttributes, newLength);
+            directoryVNodes = Arrays.copyOf(directoryVNodes, newLength);
+        }
+        System.arraycopy(directoryAttributes, index, directoryAttributes, index + 1, directorySize - index);
+        System.arraycopy(directoryVNodes, index, directoryVNodes, index + 1, directorySize - index);
+        directoryAttributes[index] = vNode.attribute;
+        directoryVNodes[index] = vNode;
+        directorySize++;
+        if(parentVNode != null){
+            parentVNode.cellAttributeAdded(vNode.attribute);
+        }
+    }
+
+    /**
+     * Removes the VNode of the attribute from the attribute directory.
+     * @param attribute
+     */
+    public void removeVNode(int attribute) {
+        int index = Arrays.binarySearch(directoryAttributes, 0, directorySize, attribute);
+        if(index >= 0){
+            directorySize--;
+            System.arraycopy(directoryAttributes, index + 1, directoryAttributes, index, directorySize - index);
+            System.arraycopy(directoryVNodes, index + 1, directoryVNodes, index, directorySize - index);
+            directoryVNodes[directorySize] = null;
+            if(parentVNode != null){
+                parentVNode.cellAttributeRemoved(attribute);
+            }
+        }
+    }
+
+    /**
+     * @return the number of VNodes in the attribute directory
+     */
+    public int nbrVNodes() {
+        return directorySize;
+    }
+
+    /**
+     * @param i
+     * @return the i:th VNode of the attribute directory, ordered by attribute
+     */
+    public VNode vNodeAt(int i) {
+        return directoryVNodes[i];
+    }
+
     /**
      * Takes a sub and inserts it into the bucket.
      * Updates the popularity of the attributes inserted as well.
@@ -34,26 +109,46 @@ public class ANode {
 
         //update attribute popularity
         for(int predAttribute: sub.predicates.keySet()){
-            if(bucketAttributePopularity.containsKey(predAttribute)){
-                bucketAttributePopularity.put(predAttribute, bucketAttributePopularity.get(predAttribute) +1);
-            } else{
-                bucketAttributePopularity.put(predAttribute, 1);
-                //update h if ranked GEMTree
-                if(isRanked && parentVNode != null){
-                    parentVNode.updateH();
-                }
+            if(predAttribute >= bucketAttributePopularity.length){
+                bucketAttributePopularity = Arrays.copyOf(bucketAttributePopularity, predAttribute + 1);
             }
+            bucketAttributePopularity[predAttribute]++;
         }
     }
 
     /**
-     * Used to remove a sub from the bucket. Called when the bucket is overflowing and a split is made.
+     * Used to remove a sub from the bucket when it is unsubscribed.
      * Also decrements the popularity of the corresponding attributes.
      * @param sub
      */
     public void removeFromBucket(Subscription sub, boolean isRanked) {
         bucket.remove(sub);
+        forget(sub, isRanked);
+    }
+
+    /**
+     * Used when the bucket is overflowing and a split is made. Partitions the bucket in one pass:
+     * the subs with a predicate on the attribute are taken out and returned in bucket order, the others stay.
+     * @param attribute
+     * @param isRanked
+     * @return the subs taken out of the bucket
+     */
+    public List<Subscription> takeFromBucket(int attribute, boolean isRanked) {
+        List<Subscription> taken = new ArrayList<>();
+        List<Subscription> kept = new ArrayList<>();
+        for(Subscription sub : bucket){
+            if(sub.predicates.containsKey(attribute)){
+                taken.add(sub);
+                forget(sub, isRanked);
+            }else{
+                kept.add(sub);
+            }
+        }
+        bucket = kept;
+        return taken;
+    }
 
+    private void forget(Subscription sub, boolean isRanked) {
         //update n if ranked GEMTree
         if(isRanked && parentVNode != null){
             parentVNode.n -= 1;
@@ -61,15 +156,7 @@ public class ANode {
 
         //update attribute popularity
         for (int predAttribute: sub.predicates.keySet()){
-            if(bucketAttributePopularity.get(predAttribute) > 1) {
-                bucketAttributePopularity.put(predAttribute, bucketAttributePopularity.get(predAttribute) -1);
-            }else{
-                bucketAttributePopularity.remove(predAttribute);
-                //update h if ranked GEMTree
-                if(isRanked && parentVNode != null){
-                    parentVNode.updateH();
-                }
-            }
+            bucketAttributePopularity[predAttribute]--;
         }
     }
 
@@ -88,17 +175,36 @@ public class ANode {
         return bucket.size() >= currentBucketCapacity;
     }
 
+    /**
+     * @return whether the ANode neither stores subscriptions nor has any VNodes in its attribute directory.
+     */
+    public boolean isEmpty() {
+        return bucket.isEmpty() && directorySize == 0;
+    }
+
+    /**
+     * @param attribute
+     * @return whether a VNode of the attribute is on the path from the root to this ANode
+     */
+    public boolean isInPath(int attribute) {
+        return containsAttribute(pathAttributes, attribute);
+    }
+
+    static boolean containsAttribute(long[] attributeMask, int attribute) {
+        int word = attribute >>> 6;
+        return word < attributeMask.length && (attributeMask[word] & (1L << attribute)) != 0;
+    }
+
     /**
      *
-     * @param root
-     * @param vNode
+     * @param splitThreshold
      * @return the most popular attribute by its key or -1 if no key has more uses than the threshold
      * Made the assumption that the attribute can not already be in path for it to be the split attribute
      */
-    public int selectMostPopularAttribute(ANode root, VNode vNode, int splitThreshold){
+    public int selectMostPopularAttribute(int splitThreshold){
         int mostPopularAttribute = -1;
-        for(int key : bucketAttributePopularity.keySet()){
-            if(bucketAttributePopularity.get(key) > mostPopularAttribute && bucketAttributePopularity.get(key) > splitThreshold && !MatchingAlgoGemTree.inPath(root, this, vNode, key)){
+        for(int key = 0; key < bucketAttributePopularity.length; key++){
+            if(bucketAttributePopularity[key] > 0 && bucketAttributePopularity[key] > mostPopularAttribute && bucketAttributePopularity[key] > splitThreshold && !isInPath(key)){
                 mostPopularAttribute = key;
             }
         }
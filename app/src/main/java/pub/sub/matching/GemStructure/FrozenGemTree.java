@@ -0,0 +1,203 @@
+package pub.sub.matching.GemStructure;
+
+import pub.sub.matching.MatchSink;
+import pub.sub.matching.Predicate;
+import pub.sub.matching.PrimitiveEvent;
+import pub.sub.matching.Subscription;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/** A read-only copy of a GEM-Tree in flat arrays, for matching only.
+ *  ANodes and VNodes are numbered, and refer to each other by index instead of by reference. The root is ANode 0.
+ *  The subscriptions of all buckets are stored one after another, and so are their predicates, with a flag per predicate telling if its attribute is in the path of its ANode.
+ *  Matching goes through the ANodes with an explicit stack instead of recursion.
+ */
+public class FrozenGemTree {
+    public final long version; //the version of the tree that was frozen
+    public final int nbrANodes;
+    private final int nbrCells;
+    private final int nbrTriangleCells;
+    private final int valDom;
+
+    private final int[] bucketStarts; //aNode -> first slot of its bucket, bucketStarts[aNode + 1] is the end
+    private final int[] directoryStarts; //aNode -> first vNode of its attribute directory, directoryStarts[aNode + 1] is the end
+    private final int[] vNodeAttributes; //vNode -> attribute, sorted within a directory
+    private final int[] cells; //vNode * nbrTriangleCells + row*(row+1)/2 + col -> aNode, -1 if the cell has no ANode
+
+    private final Subscription[] subs; //slot -> sub
+    private final int[] predicateStarts; //slot -> first predicate, predicateStarts[slot + 1] is the end
+    private final int[] attributes;
+    private final int[] lowValues;
+    private final int[] highValues;
+    private final boolean[] isInPath; //predicate -> whether its attribute is in the path of the ANode of its sub
+
+    public FrozenGemTree(ANode root, int nbrCells, int valDom, long version) {
+        this.version = version;
+        this.nbrCells = nbrCells;
+        this.nbrTriangleCells = nbrCells * (nbrCells + 1) / 2;
+        this.valDom = valDom;
+
+        //Number the nodes breadth first
+        List<ANode> aNodes = new ArrayList<>();
+        List<VNode> vNodes = new ArrayList<>();
+        IdentityHashMap<ANode, Integer> aNodeIds = new IdentityHashMap<>();
+        aNodes.add(root);
+        aNodeIds.put(root, 0);
+        int nbrSubs = 0;
+        int nbrPredicates = 0;
+        for(int a = 0; a < aNodes.size(); a++){
+            ANode aNode = aNodes.get(a);
+            for(Subscription sub : aNode.bucket){
+                nbrSubs++;
+                nbrPredicates += sub.predicateArray().length;
+            }
+            for(int v = 0; v < aNode.nbrVNodes(); v++){
+                VNode vNode = aNode.vNodeAt(v);
+                vNodes.add(vNode);
+                for(int row = 0; row < nbrCells; row++){
+                    for(int col = 0; col <= row; col++){
+                        ANode cell = vNode.cell(row, col);
+                        if(cell != null){
+                            aNodeIds.put(cell, aNodes.size());
+                            aNodes.add(cell);
+                        }
+                    }
+                }
+            }
+        }
+
+        this.nbrANodes = aNodes.size();
+        this.bucketStarts = new int[nbrANodes + 1];
+        this.directoryStarts = new int[nbrANodes + 1];
+        this.vNodeAttributes = new int[vNodes.size()];
+        this.cells = new int[vNodes.size() * nbrTriangleCells];
+        this.subs = new Subscription[nbrSubs];
+        this.predicateStarts = new int[nbrSubs + 1];
+        this.attributes = new int[nbrPredicates];
+        this.lowValues = new int[nbrPredicates];
+        this.highValues = new int[nbrPredicates];
+        this.isInPath = new boolean[nbrPredicates];
+
+        int slot = 0;
+        int pred = 0;
+        int v = 0;
+        for(int a = 0; a < nbrANodes; a++){
+            ANode aNode = aNodes.get(a);
+            bucketStarts[a] = slot;
+            for(Subscription sub : aNode.bucket){
+                subs[slot] = sub;
+                predicateStarts[slot] = pred;
+                for(Predicate predicate : sub.predicateArray()){
+                    attributes[pred] = predicate.attribute;
+                    lowValues[pred] = predicate.lowValue;
+                    highValues[pred] = predicate.highValue;
+                    isInPath[pred] = aNode.isInPath(predicate.attribute);
+                    pred++;
+                }
+                slot++;
+            }
+            directoryStarts[a] = v;
+            for(int i = 0; i < aNode.nbrVNodes(); i++){
+                VNode vNode = aNode.vNodeAt(i);
+                vNodeAttributes[v] = vNode.attribute;
+                for(int row = 0; row < nbrCells; row++){
+                    for(int col = 0; col <= row; col++){
+                        ANode cell = vNode.cell(row, col);
+                        cells[v * nbrTriangleCells + row * (row + 1) / 2 + col] = cell == null ? -1 : aNodeIds.get(cell);
+                    }
+                }
+                v++;
+            }
+        }
+        bucketStarts[nbrANodes] = slot;
+        directoryStarts[nbrANodes] = v;
+        predicateStarts[nbrSubs] = pred;
+    }
+
+    /**
+     * Matches the event and pushes the matched subscriptions into the sink. Every ANode is visited at most once, so a stack of nbrANodes is enough.
+     * An attribute is added to the intersection attributes before any cell of its VNode is visited. Since the set only grows during an event,
+     * this can only make more predicates be checked than in the recursive match, never fewer.
+     * @param event
+     * @param sink
+     * @param intersectionAttribute
+     * @param stack
+     */
+    public void match(PrimitiveEvent event, MatchSink sink, IntersectionAttributes intersectionAttribute, int[] stack) {
+        int top = 0;
+        stack[top++] = 0;
+        while(top > 0){
+            int aNode = stack[--top];
+            for(int slot = bucketStarts[aNode]; slot < bucketStarts[aNode + 1]; slot++){
+                if(isMatched(event, slot, intersectionAttribute)){
+                    sink.accept(subs[slot]);
+                }
+            }
+
+            //both the event attributes and the directory are sorted, so they are walked together
+            int vNode = directoryStarts[aNode];
+            int directoryEnd = directoryStarts[aNode + 1];
+            for(int i = 0; i < event.size() && vNode < directoryEnd; i++){
+                int eventAttribute = event.attributes[i];
+                while(vNode < directoryEnd && vNodeAttributes[vNode] < eventAttribute){
+                    vNode++;
+                }
+                if(vNode == directoryEnd || vNodeAttributes[vNode] != eventAttribute){
+                    continue;
+                }
+                int index = location(event.values[i]);
+                int base = vNode * nbrTriangleCells;
+                intersectionAttribute.add(eventAttribute);
+                for(int row = index + 1; row < nbrCells; row++){
+                    for(int col = 0; col < index; col++){
+                        top = push(stack, top, cells[base + row * (row + 1) / 2 + col]);
+                    }
+                }
+                //intersecting cells (A' and B' from the article)
+                for(int row = index; row < nbrCells; row++){
+                    top = push(stack, top, cells[base + row * (row + 1) / 2 + index]);
+                }
+                for(int col = 0; col < index; col++){
+                    top = push(stack, top, cells[base + index * (index + 1) / 2 + col]);
+                }
+            }
+        }
+    }
+
+    private static int push(int[] stack, int top, int aNode) {
+        if(aNode >= 0){
+            stack[top++] = aNode;
+        }
+        return top;
+    }
+
+    /** The same check as in MatchingAlgoGemTree: predicates on path attributes are only checked if the event went through an intersecting cell of that attribute. */
+    private boolean isMatched(PrimitiveEvent event, int slot, IntersectionAttributes intersectionAttribute) {
+        for(int pred = predicateStarts[slot]; pred < predicateStarts[slot + 1]; pred++){
+            int attribute = attributes[pred];
+            if(!event.contains(attribute)){
+                return false;
+            }
+            if(!isInPath[pred] || intersectionAttribute.contains(attribute)){
+                int value = event.get(attribute);
+                if(value < lowValues[pred] || value > highValues[pred]){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** The same cell location as in MatchingAlgoGemTree */
+    private int location(int value) {
+        double index;
+        if(value < valDom && value >= 0){
+            index = (value)/((double)(valDom)/(nbrCells));
+        }else{
+            index= nbrCells -1;
+        }
+        return (int) index;
+    }
+}
@@ -0,0 +1,39 @@
+package pub.sub.matching.GemStructure;
+
+import java.util.Arrays;
+
+/** The attributes whose intersecting cells (A' and B' from the article) an event has gone into during matching.
+ *  Kept as a boolean array indexed by attribute that is cleared by resetting only the added attributes, so it can be reused for every event. */
+public class IntersectionAttributes {
+    private boolean[] contains;
+    private int[] added;
+    private int nbrAdded;
+
+    public IntersectionAttributes(int nbrTotalAttributes) {
+        this.contains = new boolean[nbrTotalAttributes];
+        this.added = new int[nbrTotalAttributes];
+    }
+
+    public void add(int attribute) {
+        if(attribute >= contains.length){
+            int newLength = Math.max(attribute + 1, contains.length * 2);
+            contains = Arrays.copyOf(contains, newLength);
+            added = Arrays.copyOf(added, newLength);
+        }
+        if(!contains[attribute]){
+            contains[attribute] = true;
+            added[nbrAdded++] = attribute;
+        }
+    }
+
+    public boolean contains(int attribute) {
+        return attribute < contains.length && contains[attribute];
+    }
+
+    public void clear() {
+        for(int i = 0; i < nbrAdded; i++){
+            contains[added[i]] = false;
+        }
+        nbrAdded = 0;
+    }
+}
@@ -1,30 +1,35 @@
 package pub.sub.matching.GemStructure;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 
 public class VNode {
 
     public ANode parentANode;
-    public ANode[][] triangleStructure; //RTS -> right triangleStructure structure
+    private final ANode[] triangleStructure; //RTS -> right triangleStructure structure. Only the lower half (row >= col) is used, at row*(row+1)/2 + col
+    private final int nbrCells;
+    private final int bucketSize;
     public int attribute;
     public int ranking;
     private int cost;
     private double num;
     private double m;
     double n;
-    int h;
-    public List<VNode> decendents;
+    int h; //number of attributes, not in the path, that some ANode of the triangle structure has a VNode of
+    private int[] cellAttributeCounts = new int[0]; //attribute -> number of ANodes of the triangle structure with a VNode of it
+    private List<VNode> decendents;
+    private long decendentCosts; //sum of the costs of the decendents
+    private double decendentNums; //sum of the nums of the decendents
+    final long[] pathAttributes; //the path attributes of the parent ANode and this VNode's attribute, given to the ANodes of the triangle structure
 
     public VNode(int nbrCells, int attribute, int bucketSize, ANode aNode){
-        this.triangleStructure = new ANode[nbrCells][nbrCells];
-        for(int i = 0; i <nbrCells; i++ ){
-            for(int j = 0; j<nbrCells; j++){
-                this.triangleStructure[i][j] = new ANode(bucketSize, this);
-            }
-        }
+        this.pathAttributes = Arrays.copyOf(aNode.pathAttributes, Math.max(aNode.pathAttributes.length, (attribute >>> 6) + 1));
+        this.pathAttributes[attribute >>> 6] |= 1L << attribute;
+        //the ANodes are created once a subscription is stored in them, see cellOrCreate
+        this.triangleStructure = new ANode[nbrCells * (nbrCells + 1) / 2];
+        this.nbrCells = nbrCells;
+        this.bucketSize = bucketSize;
         this.attribute = attribute;
         this.cost = 0;
         this.num = 1;
@@ -34,78 +39,120 @@ public class VNode {
     }
 
     /** Updating a vNodes ranking. Assumed it's called from bottom to top in branch
-     *  Assumption: update ranking on vNodes instead on aNodes as pseudo showed*/
+     *  Assumption: update ranking on vNodes instead on aNodes as pseudo showed
+     *  The change of cost and num is added to the sums of the parent VNode, so its ranking can be updated without visiting its decendents. */
     public void updateRanking(double alpha){
+        int oldCost = this.cost;
+        double oldNum = this.num;
+        rank(alpha);
+        VNode parentVNode = parentANode.parentVNode; //ranked VNodes are always among the decendents of it
+        if(parentVNode != null){
+            parentVNode.decendentCosts += this.cost - oldCost;
+            parentVNode.decendentNums += this.num - oldNum;
+        }
+    }
+
+    private void rank(double alpha){
         //calculate rank and set in VNode
         this.m = 0.5; //calcNewM(this.m, eventValue, valueDom);
-        this.cost = cost(this, alpha);
+        this.cost = cost(alpha);
         this.num = this.num();
         this.ranking = (int) (this.cost / this.num);
     }
 
+    /** Sets n and the decendents from the triangle structure and ranks the VNode, after a bulk load that filled the ANodes without ranking.
+     *  The VNodes of the ANodes in the triangle structure must already be ranked. The parent VNode is not updated, it does the same once all its cells are done. */
+    public void rankBulkLoaded(double alpha){
+        n = 0;
+        for(ANode aNode : triangleStructure){
+            if(aNode != null){
+                n += aNode.bucket.size();
+                for(int i = 0; i < aNode.nbrVNodes(); i++){
+                    addDecendent(aNode.vNodeAt(i));
+                }
+            }
+        }
+        rank(alpha);
+    }
+
     /** Updating a vNodes cost.
      * Assumption: it's called from bottom to top in branch &
      * removed nbrEventAttribute == pathLength condition as mentioned in pseudo code since we don't know variable events*/
-    public int cost(VNode vNode, double alpha){
-        if(isLeafNode(vNode)){
-            return (int) ((vNode.m * vNode.n * alpha) + (vNode.m * vNode.h));
-        }else{
-            int sumMCost = 0;
-            for(VNode decendent : vNode.decendents){
-                sumMCost += vNode.m * decendent.cost;
-            }
-            return (int)(sumMCost + (vNode.m * vNode.n * alpha) + (vNode.m * vNode.h));
-        }
+    public int cost(double alpha){
+        return (int) ((m * decendentCosts) + (m * n * alpha) + (m * h));
     }
 
 
     /** Updating a vNodes num. Assumed it's called from bottom to top in branch */
     public double num(){
-        if(isLeafNode(this)){
-            return this.n;
-        }else{
-            int numSum = 0;
-            for(VNode decendent : this.decendents){
-                numSum += decendent.num;
+        return decendentNums + this.n;
+    }
+
+    /** Adds a VNode created in one of the ANodes of the triangle structure to the decendents. */
+    public void addDecendent(VNode vNode) {
+        decendents.add(vNode);
+        decendentCosts += vNode.cost;
+        decendentNums += vNode.num;
+    }
+
+    /** Removes a VNode that was removed from one of the ANodes of the triangle structure from the decendents. */
+    public void removeDecendent(VNode vNode) {
+        if(decendents.remove(vNode)){
+            decendentCosts -= vNode.cost;
+            decendentNums -= vNode.num;
+        }
+    }
+
+    /**
+     * @param row
+     * @param col
+     * @return the ANode of the cell, or null if nothing has been stored in the cell. Only cells with row >= col exist.
+     */
+    public ANode cell(int row, int col) {
+        return triangleStructure[row * (row + 1) / 2 + col];
+    }
+
+    /**
+     * @param row
+     * @param col
+     * @return the ANode of the cell, created if nothing has been stored in the cell before
+     */
+    public ANode cellOrCreate(int row, int col) {
+        int index = row * (row + 1) / 2 + col;
+        if(triangleStructure[index] == null){
+            triangleStructure[index] = new ANode(bucketSize, this);
+        }
+        return triangleStructure[index];
+    }
+
+    /** Returns whether no ANode in the triangle structure holds subscriptions or further VNodes. */
+    public boolean isEmpty() {
+        for(ANode aNode : triangleStructure){
+            if(aNode != null && !aNode.isEmpty()){
+                return false;
             }
-            return numSum + this.n;
         }
+        return true;
     }
 
     public boolean isLeafNode(VNode vNode){
         return vNode.decendents.size() == 0;
     }
 
-    /** updates H that is a part of the ranking.
-     * Improvement: Check if more efficient way. Removing specific attribute may remove an attribute also stored in other bucket -> incorrect. So we need to check all buckets anyway.
-     */
-    public void updateH() {
-        //go through rts to find all aNodes. Go through their buckets to get sets of attributes.
-        Set<Integer> attributes = new HashSet<>();
-        for(int row = 0; row < triangleStructure.length; row ++){
-            for(int col = 0; col < triangleStructure.length; col ++){
-                ANode currentAnode = triangleStructure[row][col];
-                Set<Integer> set = currentAnode.attributeDirectory.keySet();
-                attributes.addAll(set);
-            }
+    /** Updates h when an ANode of the triangle structure gets a VNode of the attribute. Synchronized since the ANodes are built in parallel by a bulk load. */
+    synchronized void cellAttributeAdded(int attribute) {
+        if(attribute >= cellAttributeCounts.length){
+            cellAttributeCounts = Arrays.copyOf(cellAttributeCounts, attribute + 1);
+        }
+        if(cellAttributeCounts[attribute]++ == 0 && !ANode.containsAttribute(pathAttributes, attribute)){
+            h++;
         }
-        Set<Integer> attributesInPath = attributesInPath();
-        attributes.removeAll(attributesInPath);
-        this.h = attributes.size();
     }
 
-    /** Returns the list of attributes that is in the current path, from current node to root node.
-     * @return Set
-     */
-    private Set<Integer> attributesInPath() {
-        Set<Integer> attributes = new HashSet<>();
-        ANode aNodeToCheck = this.parentANode;
-        VNode vNodeToCheck;
-        while(aNodeToCheck.parentVNode != null){
-            attributes.add(attribute);
-            vNodeToCheck = aNodeToCheck.parentVNode;
-            aNodeToCheck = vNodeToCheck.parentANode;
+    /** Updates h when an ANode of the triangle structure loses its VNode of the attribute. */
+    synchronized void cellAttributeRemoved(int attribute) {
+        if(--cellAttributeCounts[attribute] == 0 && !ANode.containsAttribute(pathAttributes, attribute)){
+            h--;
         }
-        return attributes;
     }
 }
@@ -19,19 +19,56 @@ public class Generator {
      * Returns an algo based on the provided configuration and choice of algo
      **/
     static MatchingAlgo createMatchingAlgo(Config config, String algo) {
+        //"concurrent-<algo>" allows inserts and removals while other threads match, e.g. "concurrent-gem"
+        if(algo.startsWith("concurrent-")){
+            String replicaAlgo = algo.substring("concurrent-".length());
+            return new ConcurrentMatchingAlgo(() -> createMatchingAlgo(config, replicaAlgo));
+        }
+        //"sharded-<algo>" spreads the subscriptions over shards of <algo>, e.g. "sharded-gem"
+        if(algo.startsWith("sharded-")){
+            String shardAlgo = algo.substring("sharded-".length());
+            int nbrShards = config.NBR_SHARDS > 0 ? config.NBR_SHARDS : Runtime.getRuntime().availableProcessors();
+            return new ShardedMatchingAlgo(nbrShards, () -> createMatchingAlgo(config, shardAlgo));
+        }
         switch (algo) {
             case "linear":
                 return new MatchingAlgoLinear();
             case "linear-string":
                 return new MatchingAlgoLinearString();
+            case "linear-string-compiled":
+                return new MatchingAlgoLinearCompiled();
+            case "linear-string-shared":
+                return new MatchingAlgoLinearShared();
+            case "hybrid-string":
+                return new MatchingAlgoHybrid(createMatchingAlgo(config, "gem"), config.VAL_DOM, MatchingAlgoLinearString.newScriptHost());
+            case "linear-columnar":
+                return new MatchingAlgoLinearColumnar();
+            case "linear-simd":
+                return new MatchingAlgoLinearSimd();
             case "maema":
                 return new MatchingAlgoMaema(config.NBR_TOTAL_ATTRIBUTES, config.MAEMA_MAX_NUMBER_BUCKETS, config.NBR_SUBS, config.VAL_DOM, config.WIDTH, config.NBR_SUB_PREDICATES);
+            case "maema-adaptive":
+                return new MatchingAlgoMaema(config.NBR_TOTAL_ATTRIBUTES, config.MAEMA_MAX_NUMBER_BUCKETS, config.NBR_SUBS, config.VAL_DOM, config.WIDTH, config.NBR_SUB_PREDICATES, true);
+            case "rein":
+                return new MatchingAlgoRein(config.NBR_TOTAL_ATTRIBUTES, config.MAEMA_MAX_NUMBER_BUCKETS, config.NBR_SUBS, config.VAL_DOM);
+            case "tama":
+                return new MatchingAlgoTama(config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUBS, config.VAL_DOM, config.TAMA_NBR_LEVELS, true);
+            case "tama-approx":
+                return new MatchingAlgoTama(config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUBS, config.VAL_DOM, config.TAMA_NBR_LEVELS, false);
+            case "betree":
+                return new MatchingAlgoBeTree(config.VAL_DOM);
             case "gemUnRanked":
                 return new MatchingAlgoGemTree(config.NBR_SUBS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUB_PREDICATES, config.VAL_DOM, config.GEMTree_NBR_CELLS, config.GEMTree_SPLIT_THRESHOLD, config.GEMTree_INCREASE_BUCKET_SIZE_FACTOR, config.GEMTree_ALPHA, false);
             case "gem":
                 return new MatchingAlgoGemTree(config.NBR_SUBS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUB_PREDICATES, config.VAL_DOM, config.GEMTree_NBR_CELLS, config.GEMTree_SPLIT_THRESHOLD, config.GEMTree_INCREASE_BUCKET_SIZE_FACTOR, config.GEMTree_ALPHA, true);
+            case "gem-frozen":
+                return new MatchingAlgoGemTree(config.NBR_SUBS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUB_PREDICATES, config.VAL_DOM, config.GEMTree_NBR_CELLS, config.GEMTree_SPLIT_THRESHOLD, config.GEMTree_INCREASE_BUCKET_SIZE_FACTOR, config.GEMTree_ALPHA, true, true);
             case "avddm":
                 return new MatchingAlgoAVDDM(config.NBR_SUBS, config.VAL_DOM);
+            case "avddm-sorted":
+                return new MatchingAlgoAVDDM(config.NBR_SUBS, config.VAL_DOM, true);
+            case "avddm-adaptive":
+                return new MatchingAlgoAVDDM(config.NBR_SUBS, config.VAL_DOM, true, true);
             default:
                 return null;
         }
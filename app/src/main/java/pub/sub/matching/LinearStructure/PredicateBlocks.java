@@ -0,0 +1,58 @@
+package pub.sub.matching.LinearStructure;
+
+import java.util.Arrays;
+
+/** The subscriptions of the linear-simd engine transposed for vectorized matching.
+ *  Predicate k of every subscription is stored next to predicate k of the following subscriptions, i.e. column k is at [k*paddedSlots, (k+1)*paddedSlots).
+ *  Each lane of a vector therefore holds a different subscription, and a block of subscriptions is matched by checking its columns one at a time.
+ *  Subscriptions with fewer predicates are padded with a predicate that is always satisfied, and slots after the last subscription with one that never is.
+ */
+public class PredicateBlocks {
+    public static final int BLOCK = 16; //the slots are padded to a multiple of the largest possible vector (16 ints in 512 bits)
+    public static final int MISSING = Integer.MIN_VALUE; //event value of attributes not in the event, fails every predicate
+
+    public final int nbrSlots;
+    public final int paddedSlots;
+    public final int maxPredicates;
+    public final int[] subIds; //slot -> subId
+    public final int[] attributes; //column-wise predicate -> attribute, used as the gather index into the dense event values
+    public final int[] lowValues;
+    public final int[] highValues;
+    public final int denseLength; //length of the dense event values, the last index is the padding attribute with constant value 0
+
+    public PredicateBlocks(int nbrSlots, int maxPredicates, int maxAttribute) {
+        this.nbrSlots = nbrSlots;
+        this.paddedSlots = (nbrSlots + BLOCK - 1) / BLOCK * BLOCK;
+        this.maxPredicates = Math.max(1, maxPredicates); //at least one column, so that the padding slots fail even when no sub has predicates
+        this.subIds = new int[paddedSlots];
+        this.attributes = new int[this.maxPredicates * paddedSlots];
+        this.lowValues = new int[this.maxPredicates * paddedSlots];
+        this.highValues = new int[this.maxPredicates * paddedSlots];
+        this.denseLength = maxAttribute + 2;
+
+        //pad everything as unused slots, i.e. 0 <= 1 fails
+        Arrays.fill(attributes, paddingAttribute());
+        Arrays.fill(lowValues, 1);
+        Arrays.fill(subIds, -1);
+    }
+
+    public int paddingAttribute() {
+        return denseLength - 1;
+    }
+
+    /** Sets the predicates of the slot. Unused columns of the slot become always satisfied, i.e. 0 <= 0 <= 0. */
+    public void set(int slot, int subId, int[] subAttributes, int[] subLowValues, int[] subHighValues, int from, int to) {
+        subIds[slot] = subId;
+        for(int k = 0; k < maxPredicates; k++){
+            int index = k * paddedSlots + slot;
+            if(from + k < to){
+                attributes[index] = subAttributes[from + k];
+                lowValues[index] = subLowValues[from + k];
+                highValues[index] = subHighValues[from + k];
+            }else{
+                lowValues[index] = 0;
+                highValues[index] = 0;
+            }
+        }
+    }
+}
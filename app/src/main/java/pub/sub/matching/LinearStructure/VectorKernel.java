@@ -0,0 +1,36 @@
+package pub.sub.matching.LinearStructure;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import pub.sub.matching.MatchSink;
+
+/** The vectorized scan of linear-simd. Only loaded when the module jdk.incubator.vector is available, see MatchingAlgoLinearSimd. */
+public class VectorKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    /** Matches a block of subscriptions per iteration: the event values of column k are gathered from the dense event values by attribute,
+     *  and compared to the low and high values of the column for all lanes at once. A block stops as soon as no lane matches anymore.
+     */
+    public static void match(PredicateBlocks blocks, int[] denseValues, MatchSink sink) {
+        int lanes = SPECIES.length();
+        for(int slot = 0; slot < blocks.paddedSlots; slot += lanes){
+            VectorMask<Integer> matched = SPECIES.maskAll(true);
+            for(int k = 0; k < blocks.maxPredicates && matched.anyTrue(); k++){
+                int index = k * blocks.paddedSlots + slot;
+                IntVector values = IntVector.fromArray(SPECIES, denseValues, 0, blocks.attributes, index);
+                IntVector lowValues = IntVector.fromArray(SPECIES, blocks.lowValues, index);
+                IntVector highValues = IntVector.fromArray(SPECIES, blocks.highValues, index);
+                matched = matched.and(values.compare(VectorOperators.GE, lowValues)).and(values.compare(VectorOperators.LE, highValues));
+            }
+            if(matched.anyTrue()){
+                for(int lane = 0; lane < lanes; lane++){
+                    if(matched.laneIsSet(lane)){
+                        sink.accept(blocks.subIds[slot + lane]);
+                    }
+                }
+            }
+        }
+    }
+}
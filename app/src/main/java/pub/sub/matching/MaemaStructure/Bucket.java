@@ -1,10 +1,80 @@
 package pub.sub.matching.MaemaStructure;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
+/** The predicate values of a bucket as parallel primitive arrays, sorted by value. This lets an anchor-bucket be split at the event value with a binary search. */
 public class Bucket {
-    public ArrayList<ValIdPair> bucket;
-    public Bucket() {
-        this.bucket = new ArrayList();
+    public int[] values = new int[4];
+    public int[] subIds = new int[4];
+    public int size;
+
+    /** Inserts the value of the subscription at its sorted position. */
+    public void add(int subId, int value) {
+        if(size == values.length){
+            values = Arrays.copyOf(values, size * 2);
+            subIds = Arrays.copyOf(subIds, size * 2);
+        }
+        int index = firstAbove(value);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        System.arraycopy(subIds, index, subIds, index + 1, size - index);
+        values[index] = value;
+        subIds[index] = subId;
+        size++;
+    }
+
+    /** Appends the value without keeping the order. Used by bulk loads, which sort the bucket afterwards. */
+    public void append(int subId, int value) {
+        if(size == values.length){
+            values = Arrays.copyOf(values, size * 2);
+            subIds = Arrays.copyOf(subIds, size * 2);
+        }
+        values[size] = value;
+        subIds[size] = subId;
+        size++;
+    }
+
+    /** Sorts the values after appends. */
+    public void sort() {
+        long[] pairs = new long[size];
+        for(int i = 0; i < size; i++){
+            pairs[i] = ((long) values[i] << 32) | (subIds[i] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(pairs);
+        for(int i = 0; i < size; i++){
+            values[i] = (int) (pairs[i] >> 32);
+            subIds[i] = (int) pairs[i];
+        }
+    }
+
+    /** Removes the value of the given subscription. Only the entries with the same value are searched. */
+    public void remove(int subId, int value) {
+        for(int i = firstAtOrAbove(value); i < size && values[i] == value; i++){
+            if(subIds[i] == subId){
+                System.arraycopy(values, i + 1, values, i, size - i - 1);
+                System.arraycopy(subIds, i + 1, subIds, i, size - i - 1);
+                size--;
+                return;
+            }
+        }
+    }
+
+    /** Returns the index of the first value that is larger than or equal to the given value, or size if there is none. */
+    public int firstAtOrAbove(int value) {
+        int low = 0;
+        int high = size;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(values[mid] < value){
+                low = mid + 1;
+            }else{
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Returns the index of the first value that is larger than the given value, or size if there is none. */
+    public int firstAbove(int value) {
+        return value == Integer.MAX_VALUE ? size : firstAtOrAbove(value + 1);
     }
 }
@@ -0,0 +1,97 @@
+package pub.sub.matching.MaemaStructure;
+
+import pub.sub.matching.Predicate;
+
+import java.util.stream.IntStream;
+
+/** The buckets of MAEMA together with the parameters they were built with, the bucket step and the traversal depth y.
+ *  Kept as one object so that the adaptive mode can build a new index with other parameters and publish it at once.
+ */
+public class BucketIndex {
+    public final Bucket[][][] bucketlist; //attribute -> bucketType -> bucket
+    public final int bucketStep;
+    public final int nbrBuckets; //in c-code: bucks
+    public final int y;
+
+    public BucketIndex(int nbrTotalAttributes, int maxNbrBuckets, int valDom, double width, double nbrSubPredicates) {
+        this.bucketStep = (valDom - 1) / maxNbrBuckets + 1;
+        this.nbrBuckets = (valDom - 1) / this.bucketStep + 1;
+        this.y = traversalDepth(nbrBuckets, width, nbrSubPredicates);
+        this.bucketlist = new Bucket[nbrTotalAttributes][2][nbrBuckets + 1]; //one extra bucket for values at the end of the value domain
+        for(int i = 0; i < nbrTotalAttributes; i++){
+            for (int j = 0; j < 2; j++){
+                for(int k = 0; k < bucketlist[i][j].length; k++){
+                    this.bucketlist[i][j][k] = new Bucket();
+                }
+            }
+        }
+    }
+
+    /** The same buckets with another traversal depth */
+    public BucketIndex(BucketIndex index, int y) {
+        this.bucketlist = index.bucketlist;
+        this.bucketStep = index.bucketStep;
+        this.nbrBuckets = index.nbrBuckets;
+        this.y = y;
+    }
+
+    /** The number of neighbouring buckets to traverse from the MAEMA article, given the width and number of predicates of the subscriptions. */
+    public static int traversalDepth(int nbrBuckets, double width, double nbrSubPredicates) {
+        return (int) (nbrBuckets * (1 - Math.pow(((1 - width) / (1 - Math.pow(width, nbrSubPredicates))), (1.0 / (nbrSubPredicates - 1))) ));
+    }
+
+    public void add(int subId, Predicate[] predicates) {
+        for(Predicate pred : predicates){
+            bucketlist[pred.attribute][BucketType.lowValue][pred.lowValue / bucketStep].add(subId, pred.lowValue);
+            bucketlist[pred.attribute][BucketType.highValue][pred.highValue / bucketStep].add(subId, pred.highValue);
+        }
+    }
+
+    /** Adds many subscriptions at once. The predicates are first grouped by attribute, then the buckets of each attribute are filled and sorted in parallel,
+     *  since no two attributes share a bucket. */
+    public void addAll(int[] subIds, Predicate[][] predicates) {
+        int[] starts = new int[bucketlist.length + 1]; //attribute -> first of its predicates, starts[attribute + 1] is the end
+        for(Predicate[] subPredicates : predicates){
+            for(Predicate pred : subPredicates){
+                starts[pred.attribute + 1]++;
+            }
+        }
+        for(int attribute = 0; attribute < bucketlist.length; attribute++){
+            starts[attribute + 1] += starts[attribute];
+        }
+        int[] attributeSubIds = new int[starts[bucketlist.length]];
+        Predicate[] attributePredicates = new Predicate[starts[bucketlist.length]];
+        int[] next = starts.clone();
+        for(int i = 0; i < subIds.length; i++){
+            for(Predicate pred : predicates[i]){
+                int p = next[pred.attribute]++;
+                attributeSubIds[p] = subIds[i];
+                attributePredicates[p] = pred;
+            }
+        }
+        IntStream.range(0, bucketlist.length).parallel().forEach(attribute -> {
+            if(starts[attribute] == starts[attribute + 1]){
+                return;
+            }
+            Bucket[] lowBuckets = bucketlist[attribute][BucketType.lowValue];
+            Bucket[] highBuckets = bucketlist[attribute][BucketType.highValue];
+            for(int p = starts[attribute]; p < starts[attribute + 1]; p++){
+                Predicate pred = attributePredicates[p];
+                lowBuckets[pred.lowValue / bucketStep].append(attributeSubIds[p], pred.lowValue);
+                highBuckets[pred.highValue / bucketStep].append(attributeSubIds[p], pred.highValue);
+            }
+            for(int k = 0; k < lowBuckets.length; k++){
+                lowBuckets[k].sort();
+                highBuckets[k].sort();
+            }
+        });
+    }
+
+    /** Removes the subscription's values from the one low and one high bucket each predicate was stored in. */
+    public void remove(int subId, Predicate[] predicates) {
+        for(Predicate pred : predicates){
+            bucketlist[pred.attribute][BucketType.lowValue][pred.lowValue / bucketStep].remove(subId, pred.lowValue);
+            bucketlist[pred.attribute][BucketType.highValue][pred.highValue / bucketStep].remove(subId, pred.highValue);
+        }
+    }
+}
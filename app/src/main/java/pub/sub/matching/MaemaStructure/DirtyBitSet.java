@@ -0,0 +1,31 @@
+package pub.sub.matching.MaemaStructure;
+
+/** A bitset that remembers which of its words have been set, so that clearing it only touches those words instead of the whole set. */
+public class DirtyBitSet {
+    public long[] words = new long[0];
+    private int[] dirtyWords = new int[0];
+    private int nbrDirty;
+
+    /** Grows the set to at least the given number of words. Must only be called when the set is cleared. */
+    public void ensureCapacity(int nbrWords) {
+        if(words.length < nbrWords){
+            words = new long[nbrWords];
+            dirtyWords = new int[nbrWords];
+        }
+    }
+
+    public void set(int bit) {
+        int word = bit >>> 6;
+        if(words[word] == 0){
+            dirtyWords[nbrDirty++] = word;
+        }
+        words[word] |= 1L << bit;
+    }
+
+    public void clear() {
+        for(int i = 0; i < nbrDirty; i++){
+            words[dirtyWords[i]] = 0;
+        }
+        nbrDirty = 0;
+    }
+}
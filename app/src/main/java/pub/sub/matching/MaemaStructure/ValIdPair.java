@@ -1,11 +0,0 @@
-package pub.sub.matching.MaemaStructure;
-
-public class ValIdPair {
-    public double val;
-    public Integer subId;
-
-    public ValIdPair(Integer SubId, double value) {
-        this.subId = SubId;
-        this.val = value;
-    }
-}
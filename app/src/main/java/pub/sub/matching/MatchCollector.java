@@ -0,0 +1,33 @@
+package pub.sub.matching;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/** A MatchSink that collects the matched subscriptions into a list. It lets the algorithms implement match(Event) on top of match(Event, MatchSink).
+ *  Algorithms that only know the ids of matches provide a lookup from id to subscription. */
+class MatchCollector implements MatchSink {
+    final List<Subscription> matchedSubs = new ArrayList<>();
+    private final IntFunction<Subscription> lookup;
+
+    MatchCollector() {
+        this(null);
+    }
+
+    MatchCollector(IntFunction<Subscription> lookup) {
+        this.lookup = lookup;
+    }
+
+    @Override
+    public void accept(int subId) {
+        if(lookup == null){
+            throw new UnsupportedOperationException("No subscription lookup given for matched id " + subId);
+        }
+        matchedSubs.add(lookup.apply(subId));
+    }
+
+    @Override
+    public void accept(Subscription sub) {
+        matchedSubs.add(sub);
+    }
+}
@@ -0,0 +1,20 @@
+package pub.sub.matching;
+
+/** A MatchSink that only counts the matched subscriptions. One counter is kept per thread and reused by MatchingAlgo.countMatches. */
+class MatchCounter implements MatchSink {
+    private static final ThreadLocal<MatchCounter> counters = ThreadLocal.withInitial(MatchCounter::new);
+
+    int count;
+
+    @Override
+    public void accept(int subId) {
+        count++;
+    }
+
+    /** Returns the counter of the current thread, reset to zero. */
+    static MatchCounter resetForCurrentThread() {
+        MatchCounter counter = counters.get();
+        counter.count = 0;
+        return counter;
+    }
+}
@@ -0,0 +1,13 @@
+package pub.sub.matching;
+
+/** Receives the ids of matched subscriptions from a MatchingAlgo, one id at a time, so no list of matches has to be built.
+ *  A sink is called from the thread that performs the matching. */
+@FunctionalInterface
+public interface MatchSink {
+    void accept(int subId);
+
+    /** Called by algorithms that hold the matched Subscription object. Sinks that collect subscriptions override it. */
+    default void accept(Subscription sub) {
+        accept(sub.id);
+    }
+}
@@ -1,9 +1,52 @@
 package pub.sub.matching;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public interface MatchingAlgo {
     List<Subscription> match(Event event); //TODO: refactor use of matchedsubs
 
+    /** Matches an event and pushes the id of every matched subscription into the sink.
+     *  Scratch state is reused per thread, so matching in steady state allocates no garbage. */
+    void match(PrimitiveEvent event, MatchSink sink);
+
+    /** Matches the array-backed form of the event, which is created on the first call and then kept by the event. */
+    default void match(Event event, MatchSink sink) {
+        match(event.toPrimitive(), sink);
+    }
+
+    /** Returns the number of subscriptions that match the event, without building a list of them. */
+    default int countMatches(PrimitiveEvent event) {
+        MatchCounter counter = MatchCounter.resetForCurrentThread();
+        match(event, counter);
+        return counter.count;
+    }
+
+    default int countMatches(Event event) {
+        MatchCounter counter = MatchCounter.resetForCurrentThread();
+        match(event, counter);
+        return counter.count;
+    }
+
+    /** Matches a batch of events and returns the matched subscriptions of each event, in the same order as the events.
+     *  Engines override this to share the traversal of their structure across the whole batch. */
+    default List<List<Subscription>> matchBatch(Event[] events) {
+        List<List<Subscription>> matchedSubs = new ArrayList<>();
+        for(Event event : events){
+            matchedSubs.add(match(event));
+        }
+        return matchedSubs;
+    }
+
     void insert(Subscription sub);
+
+    /** Inserts all subscriptions. Engines override this to build their structure in bulk, e.g. in parallel, instead of one subscription at a time. */
+    default void insertAll(Subscription[] subs) {
+        for(Subscription sub : subs){
+            insert(sub);
+        }
+    }
+
+    /** Removes the subscription with the given id from the index structure. Unknown ids are ignored. */
+    void remove(int subId);
 }
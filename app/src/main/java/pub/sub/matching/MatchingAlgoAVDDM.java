@@ -1,29 +1,75 @@
 package pub.sub.matching;
 
 import pub.sub.matching.AVDDMStructure.Group;
-import pub.sub.matching.AVDDMStructure.Group.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
 
 /** The event matching algorithm named AVDDM
  *  Based on the paper: "An event matching algorithm of attribute value domain division for content-based publish/subscribe systems" (can be found in google scholar)
  *  Link: https://ieeexplore.ieee.org/document/8552305 (locked)
+ *
+ *  Subscriptions get dense internal ids, reused after removal, so the counters and predicate counts are plain arrays no larger than the number of subscriptions.
+ *  In sorted mode ("avddm-sorted"), each group keeps its predicates sorted by high value, and the scan of a group stops at the first high value below the event value.
+ *
+ *  In adaptive mode ("avddm-adaptive", also sorted), the groups of an attribute are not of equal width but equi-depth: their boundaries are taken from the observed lowValues,
+ *  so that skewed values are spread over the groups. An attribute starts with one group, and is re-split in the background when a group grows beyond twice its wanted size.
+ *  The number of groups is per attribute, the square root of its number of predicates, which balances the groups walked against the predicates scanned in the anchor group.
  */
 public class MatchingAlgoAVDDM implements MatchingAlgo {
 
-    private HashMap<Integer, Subscription> subs;
-    HashMap<Integer, Group[]> allAttributes; // attribute -> attributeGroups
+    private HashMap<Integer, Integer> denseIds; //subId -> dense id
+    private Subscription[] subs; //dense id -> sub
+    private int[] predicateCounts; //dense id -> number of predicates of the sub
+    private int nbrDenseIds; //dense ids that have been handed out
+    private int[] freeIds; //removed dense ids to reuse
+    private int nbrFreeIds;
+    private final boolean isSorted;
+    private final ThreadLocal<Counters> counters; //reusable match counters per matching thread
+    private final ThreadLocal<Counters[]> batchCounters = ThreadLocal.withInitial(() -> new Counters[0]); //reusable counters per event of a batch, per matching thread
+    Map<Integer, Group[]> allAttributes; // attribute -> attributeGroups
     int nbrGroups;
     int valDom;
     int groupStep;
 
+    //Adaptive mode
+    static final int MIN_SPLIT_SIZE = 32; //groups smaller than this are never re-split
+    private static final ExecutorService RESPLITTER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "avddm-resplit");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final boolean isAdaptive;
+    private final HashMap<Integer, Integer> nbrAttributePredicates = new HashMap<>(); //attribute -> number of predicates
+    private final Set<Integer> pendingResplits = ConcurrentHashMap.newKeySet(); //attributes waiting for a re-split
+
     public MatchingAlgoAVDDM(int expectedNbrSubscribers, int valDom){
+        this(expectedNbrSubscribers, valDom, false);
+    }
+
+    public MatchingAlgoAVDDM(int expectedNbrSubscribers, int valDom, boolean isSorted){
+        this(expectedNbrSubscribers, valDom, isSorted, false);
+    }
+
+    public MatchingAlgoAVDDM(int expectedNbrSubscribers, int valDom, boolean isSorted, boolean isAdaptive){
         int potentialNbrGroups = (int) Math.pow(expectedNbrSubscribers, (double)1/3);  //our assumptions based on articles choice of 25 groups with 50k subs
 
-        this.subs = new HashMap<>();
-        this.allAttributes = new HashMap<>();
+        this.denseIds = new HashMap<>();
+        this.subs = new Subscription[expectedNbrSubscribers];
+        this.predicateCounts = new int[expectedNbrSubscribers];
+        this.freeIds = new int[16];
+        this.isSorted = isSorted || isAdaptive;
+        this.isAdaptive = isAdaptive;
+        this.counters = ThreadLocal.withInitial(Counters::new);
+        this.allAttributes = isAdaptive ? new ConcurrentHashMap<>() : new HashMap<>(); //re-splits replace groups while other threads match
         this.nbrGroups = Math.min(potentialNbrGroups, valDom); //our assumptions
         this.valDom = valDom;
         this.groupStep = valDom / nbrGroups;
@@ -31,25 +77,50 @@ public class MatchingAlgoAVDDM implements MatchingAlgo {
 
     @Override
     public List<Subscription> match(Event event) {
-        List<Subscription> matchedSubs = new ArrayList<>();
+        MatchCollector collector = new MatchCollector();
+        match(event, collector);
+        return collector.matchedSubs;
+    }
 
-        HashMap<Integer, Integer> subcounter = new HashMap<>(); //subId -> int count
-        for(int attribute: event.attributeValuePairs.keySet()){
-            var attributeGroups = allAttributes.get(attribute);
+    /** Counts the satisfied predicates per subscription in the reusable counters of the current thread.
+     *  Only the counters of touched subscriptions are checked and reset afterwards. */
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        Counters scratch = counters.get();
+        scratch.ensureCapacity(predicateCounts.length);
+        int[] subcounter = scratch.subcounter; //dense id -> int count
+        int[] touched = scratch.touched;
+        int nbrTouched = 0;
+        for(int a = 0; a < event.size(); a++){
+            var attributeGroups = allAttributes.get(event.attributes[a]);
+            if(attributeGroups == null){
+                continue;
+            }
+            int value = event.values[a];
             for(Group group : attributeGroups){
-                int value = event.attributeValuePairs.get(attribute);
+                int[] highValues = group.highValues;
+                int[] ids = group.ids;
                 //if low event value is larger than any of the group's lowValues but the sub.highValue could still match the event
                 if(value > group.max ){
-                    for(GroupPredicate pred : group.list){
-                        if(value <= pred.highValue){
-                            subcounter.put(pred.subId, subcounter.getOrDefault(pred.subId, 0)+1);
+                    for(int i = 0; i < group.size; i++){
+                        if(value <= highValues[i]){
+                            if(subcounter[ids[i]]++ == 0){
+                                touched[nbrTouched++] = ids[i];
+                            }
+                        }else if(isSorted){
+                            break; //the remaining high values are smaller
                         }
                     }
                 //if the event value is within the group's lowvalues, check for matches
                 }else if(value <= group.max &&  value >= group.min){ //asumption that we have changed min to allow value=0 to be matched in first group
-                    for(GroupPredicate pred : group.list){
-                        if(value <= pred.highValue && value >= pred.lowValue){
-                            subcounter.put(pred.subId, subcounter.getOrDefault(pred.subId, 0)+1);
+                    int[] lowValues = group.lowValues;
+                    for(int i = 0; i < group.size; i++){
+                        if(value <= highValues[i]){
+                            if(value >= lowValues[i] && subcounter[ids[i]]++ == 0){
+                                touched[nbrTouched++] = ids[i];
+                            }
+                        }else if(isSorted){
+                            break;
                         }
                     }
                 }else{
@@ -59,19 +130,104 @@ public class MatchingAlgoAVDDM implements MatchingAlgo {
         }
 
         //check
-        for(int subId : subcounter.keySet()){
-            Subscription sub = subs.get(subId);
-            if(subcounter.get(subId) == sub.predicates.size()){
-                matchedSubs.add(sub);
+        for(int i = 0; i < nbrTouched; i++){
+            int id = touched[i];
+            if(subcounter[id] == predicateCounts[id]){
+                sink.accept(subs[id]);
+            }
+            subcounter[id] = 0;
+        }
+    }
+
+    /** Match a batch of events. The groups of an attribute are walked once for all events holding that attribute,
+     *  and each group predicate is counted for every event whose value it covers.
+     *  Each event of the batch counts into its own reusable counters of the current thread, as in match.
+     */
+    @Override
+    public List<List<Subscription>> matchBatch(Event[] events) {
+        List<List<Subscription>> matchedSubs = new ArrayList<>();
+        Counters[] scratch = scratchForBatch(events.length);
+        //Group the events of the batch by attribute
+        PrimitiveEvent[] primitiveEvents = new PrimitiveEvent[events.length];
+        HashMap<Integer, List<Integer>> eventsPerAttribute = new HashMap<>(); //attribute -> indexes of events
+        for(int i = 0; i < events.length; i++){
+            matchedSubs.add(new ArrayList<>());
+            primitiveEvents[i] = events[i].toPrimitive();
+            for(int attribute : primitiveEvents[i].attributes){
+                eventsPerAttribute.computeIfAbsent(attribute, a -> new ArrayList<>()).add(i);
+            }
+        }
+
+        for(int attribute : eventsPerAttribute.keySet()){
+            Group[] attributeGroups = allAttributes.get(attribute);
+            if(attributeGroups == null){
+                continue;
+            }
+            List<Integer> eventIndexList = eventsPerAttribute.get(attribute);
+            int[] eventIndexes = new int[eventIndexList.size()];
+            int[] values = new int[eventIndexes.length];
+            int maxValue = 0;
+            for(int e = 0; e < values.length; e++){
+                eventIndexes[e] = eventIndexList.get(e);
+                values[e] = primitiveEvents[eventIndexes[e]].get(attribute);
+                maxValue = Math.max(maxValue, values[e]);
+            }
+            for(Group group : attributeGroups){
+                //no event value reaches the group's lowValues, and neither the following groups'
+                if(maxValue < group.min){
+                    break;
+                }
+                for(int p = 0; p < group.size; p++){
+                    int id = group.ids[p];
+                    for(int e = 0; e < values.length; e++){
+                        int value = values[e];
+                        if(value > group.max ? value <= group.highValues[p] : value >= group.min && value <= group.highValues[p] && value >= group.lowValues[p]){
+                            Counters counters = scratch[eventIndexes[e]];
+                            if(counters.subcounter[id]++ == 0){
+                                counters.touched[counters.nbrTouched++] = id;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        //check
+        for(int i = 0; i < events.length; i++){
+            Counters counters = scratch[i];
+            for(int t = 0; t < counters.nbrTouched; t++){
+                int id = counters.touched[t];
+                if(counters.subcounter[id] == predicateCounts[id]){
+                    matchedSubs.get(i).add(subs[id]);
+                }
+                counters.subcounter[id] = 0;
             }
+            counters.nbrTouched = 0;
         }
         return matchedSubs;
     }
 
+    /** Returns reusable counters of the current thread for each event of a batch, grown to the current number of dense ids. */
+    private Counters[] scratchForBatch(int batchSize) {
+        Counters[] scratch = batchCounters.get();
+        if(scratch.length < batchSize){
+            scratch = Arrays.copyOf(scratch, batchSize);
+            for(int i = 0; i < batchSize; i++){
+                if(scratch[i] == null){
+                    scratch[i] = new Counters();
+                }
+            }
+            batchCounters.set(scratch);
+        }
+        for(int i = 0; i < batchSize; i++){
+            scratch[i].ensureCapacity(predicateCounts.length);
+        }
+        return scratch;
+    }
+
     @Override
-    public void insert(Subscription sub) {
-        //add sub to hashmap
-        subs.put(sub.id, sub);
+    public synchronized void insert(Subscription sub) {
+        int id = register(sub);
 
         /*add in structure*/
         //For each attribute in sub pred -> add to each attributeList in correct group
@@ -81,29 +237,235 @@ public class MatchingAlgoAVDDM implements MatchingAlgo {
             //Initiate or get attribute list
             Group[] attributeList;
             if(!allAttributes.containsKey(pred.attribute)){
-                attributeList = new Group[nbrGroups];
-                populateAttributeList(attributeList, groupStep);
+                attributeList = isAdaptive ? new Group[]{new Group(0, valDom, true)} : new Group[nbrGroups];
+                if(!isAdaptive){
+                    populateAttributeList(attributeList, groupStep);
+                }
                 allAttributes.put(pred.attribute, attributeList);
             }else{
                 attributeList = allAttributes.get(pred.attribute);
             }
 
             //get group and add
-            Group correctGroup = attributeList[groupIndex(pred)];
-            Group.GroupPredicate groupPred = new Group.GroupPredicate(pred, sub.id);
-            correctGroup.list.add(groupPred);
+            Group correctGroup = attributeList[groupIndex(attributeList, pred.lowValue)];
+            correctGroup.add(id, pred.lowValue, pred.highValue);
+            if(isAdaptive){
+                int nbrPredicates = nbrAttributePredicates.merge(pred.attribute, 1, Integer::sum);
+                if(correctGroup.size > Math.max(MIN_SPLIT_SIZE, 2 * Math.sqrt(nbrPredicates))){
+                    scheduleResplit(pred.attribute);
+                }
+            }
+        }
+
+    }
+
+    /** Gives the sub a dense id, preferably one freed by a removal, and stores it under that id. */
+    private int register(Subscription sub) {
+        int id;
+        if(nbrFreeIds > 0){
+            id = freeIds[--nbrFreeIds];
+        }else{
+            id = nbrDenseIds++;
+            if(id >= subs.length){
+                subs = Arrays.copyOf(subs, Math.max(id + 1, subs.length * 2));
+                predicateCounts = Arrays.copyOf(predicateCounts, subs.length);
+            }
+        }
+        denseIds.put(sub.id, id);
+        subs[id] = sub;
+        predicateCounts[id] = sub.predicates.size();
+        return id;
+    }
+
+    /**
+     * Registers the subscriptions, then groups their predicates by attribute and builds the groups of each attribute in parallel.
+     * The predicates are appended and each group is sorted once at the end. In adaptive mode an attribute whose groups get too large is re-split right away instead of in the background.
+     * @param newSubs
+     */
+    @Override
+    public synchronized void insertAll(Subscription[] newSubs) {
+        //count the predicates per attribute to find where each attribute's predicates go in the flat arrays
+        HashMap<Integer, Integer> attributeIndexes = new HashMap<>(); //attribute -> index in attributes
+        List<Integer> attributes = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        int nbrPredicates = 0;
+        for(Subscription sub : newSubs){
+            for(Predicate pred : sub.predicateArray()){
+                Integer a = attributeIndexes.get(pred.attribute);
+                if(a == null){
+                    attributeIndexes.put(pred.attribute, attributes.size());
+                    attributes.add(pred.attribute);
+                    counts.add(1);
+                }else{
+                    counts.set(a, counts.get(a) + 1);
+                }
+                nbrPredicates++;
+            }
+        }
+        int[] starts = new int[attributes.size() + 1]; //attribute index -> first of its predicates, starts[a + 1] is the end
+        for(int a = 0; a < attributes.size(); a++){
+            starts[a + 1] = starts[a] + counts.get(a);
+        }
+        int[] next = starts.clone();
+        int[] ids = new int[nbrPredicates];
+        int[] lowValues = new int[nbrPredicates];
+        int[] highValues = new int[nbrPredicates];
+        for(Subscription sub : newSubs){
+            int id = register(sub);
+            for(Predicate pred : sub.predicateArray()){
+                int p = next[attributeIndexes.get(pred.attribute)]++;
+                ids[p] = id;
+                lowValues[p] = pred.lowValue;
+                highValues[p] = pred.highValue;
+            }
         }
 
+        //the map is only read and written outside of the parallel part
+        Group[][] attributeLists = new Group[attributes.size()][];
+        int[] nbrAttributePredicatesAfter = new int[attributes.size()];
+        for(int a = 0; a < attributes.size(); a++){
+            attributeLists[a] = allAttributes.get(attributes.get(a));
+            nbrAttributePredicatesAfter[a] = isAdaptive ? nbrAttributePredicates.merge(attributes.get(a), counts.get(a), Integer::sum) : 0;
+        }
+        IntStream.range(0, attributes.size()).parallel().forEach(a -> {
+            Group[] attributeList = attributeLists[a];
+            if(attributeList == null){
+                attributeList = isAdaptive ? new Group[]{new Group(0, valDom, true)} : new Group[nbrGroups];
+                if(!isAdaptive){
+                    populateAttributeList(attributeList, groupStep);
+                }
+            }
+            for(int p = starts[a]; p < starts[a + 1]; p++){
+                attributeList[groupIndex(attributeList, lowValues[p])].append(ids[p], lowValues[p], highValues[p]);
+            }
+            boolean isTooLarge = false;
+            for(Group group : attributeList){
+                group.sort();
+                isTooLarge |= group.size > Math.max(MIN_SPLIT_SIZE, 2 * Math.sqrt(nbrAttributePredicatesAfter[a]));
+            }
+            attributeLists[a] = isAdaptive && isTooLarge ? equiDepthGroups(attributeList) : attributeList;
+        });
+        for(int a = 0; a < attributes.size(); a++){
+            allAttributes.put(attributes.get(a), attributeLists[a]);
+        }
+    }
+
+    /** Removes the subscription and its group predicates. Each predicate is found in the group given by its low value. The dense id is freed for reuse. */
+    @Override
+    public synchronized void remove(int subId) {
+        Integer id = denseIds.remove(subId);
+        if(id == null){
+            return;
+        }
+        Subscription sub = subs[id];
+        subs[id] = null;
+        predicateCounts[id] = 0;
+        for(Predicate pred : sub.predicates.values()){
+            Group[] attributeList = allAttributes.get(pred.attribute);
+            attributeList[groupIndex(attributeList, pred.lowValue)].remove(id, pred.highValue);
+            if(isAdaptive){
+                nbrAttributePredicates.merge(pred.attribute, -1, Integer::sum);
+            }
+        }
+        if(nbrFreeIds == freeIds.length){
+            freeIds = Arrays.copyOf(freeIds, nbrFreeIds * 2);
+        }
+        freeIds[nbrFreeIds++] = id;
     }
 
     private void populateAttributeList(Group[] attributeList, int groupStep) {
         for(int i = 0; i < attributeList.length; i++){
-            Group group = new Group(i*groupStep, (i+1)*groupStep);
+            Group group = new Group(i*groupStep, (i+1)*groupStep, isSorted);
             attributeList[i] = group;
         }
     }
 
-    private int groupIndex(Predicate pred) {
-        return (int) ((pred.lowValue / (double)valDom) * nbrGroups);
+    /** The group of a predicate is given by its lowValue. Adaptive groups are found with a binary search for the last group whose min is not above it. */
+    private int groupIndex(Group[] attributeList, int lowValue) {
+        if(!isAdaptive){
+            return (int) ((lowValue / (double)valDom) * nbrGroups);
+        }
+        int low = 0;
+        int high = attributeList.length - 1;
+        while(low < high){
+            int mid = (low + high + 1) >>> 1;
+            if(attributeList[mid].min <= lowValue){
+                low = mid;
+            }else{
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void scheduleResplit(int attribute) {
+        if(pendingResplits.add(attribute)){
+            RESPLITTER.execute(() -> {
+                pendingResplits.remove(attribute);
+                resplit(attribute);
+            });
+        }
+    }
+
+    /** Builds equi-depth groups for the attribute from the lowValues of its predicates, and replaces its groups. Inserts and removals wait meanwhile.
+     *  Matching threads keep using the old groups until they look up the attribute again.
+     */
+    synchronized void resplit(int attribute) {
+        allAttributes.put(attribute, equiDepthGroups(allAttributes.get(attribute)));
+    }
+
+    /** Returns new groups with the predicates of the old ones, with boundaries from the sorted lowValues. Does not touch the old groups. */
+    private Group[] equiDepthGroups(Group[] oldList) {
+        int nbrPredicates = 0;
+        for(Group group : oldList){
+            nbrPredicates += group.size;
+        }
+        int[] lowValues = new int[nbrPredicates];
+        int i = 0;
+        for(Group group : oldList){
+            System.arraycopy(group.lowValues, 0, lowValues, i, group.size);
+            i += group.size;
+        }
+        Arrays.sort(lowValues);
+
+        //Boundaries at every (n/groups):th lowValue, skipping repeated values so that each group has a distinct min
+        int wantedNbrGroups = Math.max(1, (int) Math.sqrt(nbrPredicates));
+        int[] mins = new int[wantedNbrGroups];
+        int nbrNewGroups = 1; //the first group starts at 0
+        for(int g = 1; g < wantedNbrGroups; g++){
+            int boundary = lowValues[(int) ((long) g * nbrPredicates / wantedNbrGroups)];
+            if(boundary > mins[nbrNewGroups - 1]){
+                mins[nbrNewGroups++] = boundary;
+            }
+        }
+        Group[] newList = new Group[nbrNewGroups];
+        for(int g = 0; g < nbrNewGroups; g++){
+            int max = g + 1 < nbrNewGroups ? mins[g + 1] : valDom;
+            newList[g] = new Group(mins[g], max, true);
+        }
+        for(Group group : oldList){
+            for(int p = 0; p < group.size; p++){
+                Group newGroup = newList[groupIndex(newList, group.lowValues[p])];
+                newGroup.append(group.ids[p], group.lowValues[p], group.highValues[p]);
+            }
+        }
+        for(Group group : newList){
+            group.sort();
+        }
+        return newList;
+    }
+
+    /** The scratch state of one matching thread. Counters are indexed by dense id and only grow when more subscriptions are inserted. */
+    private static class Counters {
+        int[] subcounter = new int[0];
+        int[] touched = new int[0];
+        int nbrTouched; //only used by matchBatch
+
+        void ensureCapacity(int capacity) {
+            if(subcounter.length < capacity){
+                subcounter = new int[capacity];
+                touched = new int[capacity];
+            }
+        }
     }
 }
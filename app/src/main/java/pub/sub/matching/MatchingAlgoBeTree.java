@@ -0,0 +1,253 @@
+package pub.sub.matching;
+
+import pub.sub.matching.BeTreeStructure.CNode;
+import pub.sub.matching.BeTreeStructure.PNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/** The event matching algorithm named BE-Tree
+ *  Based on the paper: "BE-Tree: An Index Structure to Efficiently Match Boolean Expressions over High-dimensional Discrete Space" (SIGMOD 2011, can be found in google scholar)
+ *
+ *  The tree alternates two kinds of space partitioning. A CNode whose bucket overflows first clusters its subscriptions by value range: the subscriptions whose
+ *  predicate fits within one half of the CNode's range are moved to a child CNode of that half. The subscriptions left are then partitioned by attribute: the attribute
+ *  most of them have a predicate on, and that is not already in the path, gets a PNode, and those subscriptions are moved to the c-directory of the PNode.
+ *  Matching only enters the PNodes of attributes the event has, and in their c-directories only the clusters whose range holds the event value.
+ *  The subscriptions of a cluster all hold its middle, so each cluster also keeps the range of their predicates, and is skipped for event values outside it.
+ *  So the cost grows with the attributes the subscriptions are partitioned on, not with the number of event attributes.
+ *
+ *  Removals prune the CNodes and PNodes that become empty, and shrink the capacity of buckets that were grown, so the tree follows the subscriptions that are left.
+ */
+public class MatchingAlgoBeTree implements MatchingAlgo {
+    static final int BUCKET_CAPACITY = 16; //the bucket size that makes a CNode split, doubled for a CNode where no split is possible
+    private final CNode root;
+    private final HashMap<Integer, CNode> subLocations; //subId -> the CNode whose bucket holds the sub
+    int valDom;
+
+    public MatchingAlgoBeTree(int valDom){
+        this.root = new CNode(BUCKET_CAPACITY);
+        this.subLocations = new HashMap<>();
+        this.valDom = valDom;
+    }
+
+    @Override
+    public List<Subscription> match(Event event) {
+        MatchCollector collector = new MatchCollector();
+        match(event, collector);
+        return collector.matchedSubs;
+    }
+
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        match(root, event, sink);
+    }
+
+    private void match(CNode cNode, PrimitiveEvent event, MatchSink sink) {
+        List<Subscription> bucket = cNode.bucket;
+        for(int i = 0; i < bucket.size(); i++){
+            if(isMatched(bucket.get(i), event)){
+                sink.accept(bucket.get(i));
+            }
+        }
+        List<PNode> pDirectory = cNode.pDirectory;
+        for(int i = 0; i < pDirectory.size(); i++){
+            PNode pNode = pDirectory.get(i);
+            if(!event.contains(pNode.attribute)){
+                continue;
+            }
+            int value = event.get(pNode.attribute);
+            //The clusters on the path of the value, starting at the top one for any value since predicates that reach outside the value domain are stored there
+            CNode cluster = pNode.cluster;
+            while(cluster != null){
+                if(cluster.isCovering(value)){
+                    match(cluster, event, sink);
+                }
+                cluster = value <= cluster.middle() ? cluster.left : cluster.right;
+                if(cluster != null && !cluster.contains(value)){
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean isMatched(Subscription sub, PrimitiveEvent event) {
+        for(Predicate pred : sub.predicateArray()){
+            if(!event.contains(pred.attribute)) {
+                return false;
+            }
+            int eventValue = event.get(pred.attribute);
+            if(eventValue < pred.lowValue || eventValue > pred.highValue){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void insert(Subscription sub) {
+        insert(root, sub);
+    }
+
+    /** Moves the sub into the PNode with the most subscriptions among those of its attributes, or stores it in the bucket if there is none. */
+    private void insert(CNode cNode, Subscription sub) {
+        PNode best = null;
+        for(PNode pNode : cNode.pDirectory){
+            if(sub.predicates.containsKey(pNode.attribute) && (best == null || pNode.nbrSubs > best.nbrSubs)){
+                best = pNode;
+            }
+        }
+        if(best != null){
+            insert(best, sub);
+            return;
+        }
+        cNode.bucket.add(sub);
+        subLocations.put(sub.id, cNode);
+        if(cNode.bucket.size() > cNode.bucketCapacity){
+            split(cNode);
+        }
+    }
+
+    private void insert(PNode pNode, Subscription sub) {
+        pNode.nbrSubs++;
+        Predicate pred = sub.predicates.get(pNode.attribute);
+        CNode cluster = smallestCluster(pNode.cluster, pred);
+        cluster.widen(pred.lowValue, pred.highValue);
+        insert(cluster, sub);
+    }
+
+    /** Returns the deepest existing cluster below the given one whose range holds the whole predicate */
+    private CNode smallestCluster(CNode cluster, Predicate pred) {
+        while(true){
+            CNode half = pred.highValue <= cluster.middle() ? cluster.left : cluster.right;
+            if(half == null || !half.contains(pred.lowValue) || !half.contains(pred.highValue)){
+                return cluster;
+            }
+            cluster = half;
+        }
+    }
+
+    /** Clusters the bucket by value range if the CNode is in a c-directory, then partitions what is left by attribute.
+     *  If the bucket still overflows, no split helps and its capacity is doubled instead. */
+    private void split(CNode cNode) {
+        if(cNode.parentPNode != null && cNode.lowValue < cNode.highValue){
+            cluster(cNode);
+        }
+        if(cNode.bucket.size() > cNode.bucketCapacity){
+            partition(cNode);
+        }
+        if(cNode.bucket.size() > cNode.bucketCapacity){
+            cNode.bucketCapacity *= 2;
+        }
+    }
+
+    /** Moves the subs whose predicate on the attribute of the c-directory fits within one half of the range to the child cluster of that half. */
+    private void cluster(CNode cNode) {
+        int attribute = cNode.parentPNode.attribute;
+        int middle = cNode.middle();
+        List<Subscription> moving = new ArrayList<>();
+        List<Subscription> staying = new ArrayList<>();
+        for(Subscription sub : cNode.bucket){
+            Predicate pred = sub.predicates.get(attribute);
+            boolean fitsLeft = pred.lowValue >= cNode.lowValue && pred.highValue <= middle;
+            boolean fitsRight = pred.lowValue > middle && pred.highValue <= cNode.highValue;
+            (fitsLeft || fitsRight ? moving : staying).add(sub);
+        }
+        if(moving.isEmpty()){
+            return;
+        }
+        cNode.bucket.clear();
+        cNode.bucket.addAll(staying);
+        for(Subscription sub : moving){
+            Predicate pred = sub.predicates.get(attribute);
+            CNode half;
+            if(pred.highValue <= middle){
+                if(cNode.left == null){
+                    cNode.left = new CNode(cNode, cNode.lowValue, middle, BUCKET_CAPACITY);
+                }
+                half = cNode.left;
+            }else{
+                if(cNode.right == null){
+                    cNode.right = new CNode(cNode, middle + 1, cNode.highValue, BUCKET_CAPACITY);
+                }
+                half = cNode.right;
+            }
+            CNode cluster = smallestCluster(half, pred);
+            cluster.widen(pred.lowValue, pred.highValue);
+            insert(cluster, sub);
+        }
+    }
+
+    /** Creates a PNode for the attribute that most subs in the bucket have a predicate on, among those not in the path, and moves those subs to it. */
+    private void partition(CNode cNode) {
+        HashMap<Integer, Integer> attributeCounts = new HashMap<>(); //attribute -> number of subs in the bucket with a predicate on it
+        int bestAttribute = -1;
+        int bestCount = 0;
+        for(Subscription sub : cNode.bucket){
+            for(Predicate pred : sub.predicateArray()){
+                if(cNode.isInPath(pred.attribute)){
+                    continue;
+                }
+                int count = attributeCounts.merge(pred.attribute, 1, Integer::sum);
+                if(count > bestCount){
+                    bestCount = count;
+                    bestAttribute = pred.attribute;
+                }
+            }
+        }
+        if(bestAttribute < 0){
+            return;
+        }
+        PNode pNode = new PNode(bestAttribute, cNode, valDom, BUCKET_CAPACITY);
+        cNode.pDirectory.add(pNode);
+        List<Subscription> moving = new ArrayList<>();
+        List<Subscription> staying = new ArrayList<>();
+        for(Subscription sub : cNode.bucket){
+            (sub.predicates.containsKey(bestAttribute) ? moving : staying).add(sub);
+        }
+        cNode.bucket.clear();
+        cNode.bucket.addAll(staying);
+        for(Subscription sub : moving){
+            insert(pNode, sub);
+        }
+    }
+
+    /** Removes the subscription from its bucket, then prunes the CNodes and PNodes that became empty on the way to the root. */
+    @Override
+    public void remove(int subId) {
+        CNode cNode = subLocations.remove(subId);
+        if(cNode == null){
+            return;
+        }
+        List<Subscription> bucket = cNode.bucket;
+        for(int i = 0; i < bucket.size(); i++){
+            if(bucket.get(i).id == subId){
+                bucket.set(i, bucket.get(bucket.size() - 1));
+                bucket.remove(bucket.size() - 1);
+                break;
+            }
+        }
+        if(cNode.bucketCapacity > BUCKET_CAPACITY && bucket.size() < cNode.bucketCapacity / 4){
+            cNode.bucketCapacity /= 2;
+        }
+        for(CNode node = cNode; node.parentPNode != null; node = node.parentPNode.parentCNode){
+            node.parentPNode.nbrSubs--;
+        }
+
+        while(cNode.isEmpty() && cNode.parentPNode != null){
+            if(cNode.parentCNode != null){
+                CNode parent = cNode.parentCNode;
+                if(parent.left == cNode){
+                    parent.left = null;
+                }else{
+                    parent.right = null;
+                }
+                cNode = parent;
+            }else{
+                PNode pNode = cNode.parentPNode;
+                pNode.parentCNode.pDirectory.remove(pNode);
+                cNode = pNode.parentCNode;
+            }
+        }
+    }
+}
@@ -1,15 +1,25 @@
 package pub.sub.matching;
 
 import pub.sub.matching.GemStructure.ANode;
+import pub.sub.matching.GemStructure.FrozenGemTree;
+import pub.sub.matching.GemStructure.IntersectionAttributes;
 import pub.sub.matching.GemStructure.VNode;
 
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /** The event matching algorithm named GEM-Tree
  * Based on the paper: "GEM-Tree: Tree-Based Analytic Geometrical Multi-Dimensional Content-Based Event Matching" (can be found in google scholar)
  * Link: https://www.researchgate.net/publication/337204006_GEM-Tree_Tree-Based_Analytic_Geometrical_Multi-Dimensional_Content-Based_Event_Matching
  * A GEM-tree consists of ANodes with attribute directories and buckets. Buckets store full subscriptions.
  * The att dir in turns contains VNodes that has triangle structures, which contains new ANodes.
+ * In frozen mode the tree is also copied into a FrozenGemTree in the background after changes, and events are matched on that copy whenever it is up to date.
  */
 public class MatchingAlgoGemTree implements MatchingAlgo {
     int nbrSubscribers;
@@ -23,8 +33,32 @@ public class MatchingAlgoGemTree implements MatchingAlgo {
     double increaseBucketSizeFactor;
     double alpha;
     boolean isRanked;
+    HashMap<Integer, ANode> subLocations; //subId -> ANode whose bucket holds the sub
+    private final ThreadLocal<IntersectionAttributes> intersectionAttributes; //reusable per matching thread
+
+    //Frozen mode
+    static final long REFREEZE_DELAY_MS = 100; //changes within this time after the first one are frozen together
+    private static final ScheduledExecutorService FREEZER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gem-freeze");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final boolean isFrozen;
+    private final AtomicBoolean isFreezeScheduled = new AtomicBoolean();
+    private volatile long version; //number of inserts and removals so far
+    private volatile FrozenGemTree frozenTree;
+    private final ThreadLocal<int[]> stacks = ThreadLocal.withInitial(() -> new int[0]); //reusable per matching thread
+
+    static final int BULK_LOAD_PARALLEL_THRESHOLD = 4096; //ANodes with fewer subs build their cells on the same thread
 
     public MatchingAlgoGemTree(int nbrSubscribers, int nbrTotalAttributes, int nbrSubPredicates, int valDom , int nbrCells, int splitThreshold, double increaseBucketSizeFactor, double alpha, boolean isRanked){
+        this(nbrSubscribers, nbrTotalAttributes, nbrSubPredicates, valDom, nbrCells, splitThreshold, increaseBucketSizeFactor, alpha, isRanked, false);
+    }
+
+    /**
+     * @param isFrozen whether to keep a flat read-only copy of the tree up to date in the background and match on it
+     */
+    public MatchingAlgoGemTree(int nbrSubscribers, int nbrTotalAttributes, int nbrSubPredicates, int valDom , int nbrCells, int splitThreshold, double increaseBucketSizeFactor, double alpha, boolean isRanked, boolean isFrozen){
         this.nbrSubscribers = nbrSubscribers;
         this.nbrTotalAttributes = nbrTotalAttributes;
         this.nbrSubPredicates = nbrSubPredicates;
@@ -36,6 +70,22 @@ public class MatchingAlgoGemTree implements MatchingAlgo {
         this.increaseBucketSizeFactor = increaseBucketSizeFactor;
         this.alpha = alpha;
         this.isRanked = isRanked;
+        this.subLocations = new HashMap<>();
+        this.intersectionAttributes = ThreadLocal.withInitial(() -> new IntersectionAttributes(this.nbrTotalAttributes));
+        this.isFrozen = isFrozen;
+    }
+
+    /**
+     * Bulk-loads the subscriptions instead of inserting them one by one. The tree is built top-down: every ANode gets all of its subscriptions at once,
+     * splits on the most popular attributes until its bucket no longer overflows, and then its cells are built in parallel.
+     * @param subs
+     */
+    public MatchingAlgoGemTree(int nbrSubscribers, int nbrTotalAttributes, int nbrSubPredicates, int valDom , int nbrCells, int splitThreshold, double increaseBucketSizeFactor, double alpha, boolean isRanked, boolean isFrozen, Subscription[] subs){
+        this(nbrSubscribers, nbrTotalAttributes, nbrSubPredicates, valDom, nbrCells, splitThreshold, increaseBucketSizeFactor, alpha, isRanked, isFrozen);
+        insertAll(subs);
+        if(isFrozen){
+            freeze();
+        }
     }
 
     /**
@@ -45,10 +95,51 @@ public class MatchingAlgoGemTree implements MatchingAlgo {
      */
     @Override
     public List<Subscription> match(Event event) {
-        List<Subscription> matchedSubs = new ArrayList<>();
-        Set<Integer> intersectionAttribute = new HashSet<>();
-        match(event, root, null, matchedSubs, intersectionAttribute);
-        return matchedSubs;
+        MatchCollector collector = new MatchCollector();
+        match(event, collector);
+        return collector.matchedSubs;
+    }
+
+    /**
+     * match method that pushes the matched subscriptions into the sink. The intersection attributes of the current thread are reused.
+     * Uses the frozen tree if it has been frozen since the last insert or removal, otherwise the tree itself.
+     * @param event
+     * @param sink
+     */
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        IntersectionAttributes intersectionAttribute = intersectionAttributes.get();
+        intersectionAttribute.clear();
+        FrozenGemTree frozen = frozenTree;
+        if(frozen != null && frozen.version == version){
+            int[] stack = stacks.get();
+            if(stack.length < frozen.nbrANodes){
+                stack = new int[frozen.nbrANodes];
+                stacks.set(stack);
+            }
+            frozen.match(event, sink, intersectionAttribute, stack);
+        }else{
+            match(event, root, null, sink, intersectionAttribute);
+        }
+    }
+
+    /**
+     * Copies the current tree into a FrozenGemTree that match uses until the next insert or removal.
+     * Called in the background in frozen mode, and can be called directly to freeze right away.
+     */
+    public synchronized void freeze() {
+        frozenTree = new FrozenGemTree(root, nbrCells, valDom, version);
+    }
+
+    /** Counts a change of the tree, and in frozen mode schedules a freeze unless one is already scheduled. Called with the lock held. */
+    private void changed() {
+        version++;
+        if(isFrozen && isFreezeScheduled.compareAndSet(false, true)){
+            FREEZER.schedule(() -> {
+                isFreezeScheduled.set(false);
+                freeze();
+            }, REFREEZE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
@@ -56,41 +147,46 @@ public class MatchingAlgoGemTree implements MatchingAlgo {
      * @param event
      * @param aNode
      * @param vNode
-     * @param matchedSubs
+     * @param sink
      * @param intersectionAttribute
-     * @return the list of matched subscriptions
      */
-    public List<Subscription> match(Event event, ANode aNode, VNode vNode, List<Subscription> matchedSubs, Set<Integer> intersectionAttribute){
+    public void match(PrimitiveEvent event, ANode aNode, VNode vNode, MatchSink sink, IntersectionAttributes intersectionAttribute){
         ANode aNodeToCheck;
-        checkANode(event, aNode, vNode, matchedSubs, intersectionAttribute);
-        for(int eventAttribute : event.attributeValuePairs.keySet()){
-            if(aNode.attributeDirectory.size() == 0){
+        checkANode(event, aNode, vNode, sink, intersectionAttribute);
+        for(int i = 0; i < event.size(); i++){
+            int eventAttribute = event.attributes[i];
+            if(aNode.nbrVNodes() == 0){
                 break; //break right away if anode attribute directory is empty
             }
             VNode vNodeToCheck = getVNodeFromAttribute(eventAttribute, aNode);
             if (vNodeToCheck != null){
-                int index = location(event.attributeValuePairs.get(eventAttribute));
+                int index = location(event.values[i]);
                 if(index != 0) { //no need to continue if the inner loop is tied to index = 0
                     for (int row = index + 1; row < nbrCells; row++) {
                         for (int col = 0; col < index; col++) {
-                            aNodeToCheck = vNodeToCheck.triangleStructure[row][col]; //newANode is the next node to check to go further down the tree.
-                            match(event, aNodeToCheck, vNodeToCheck, matchedSubs, intersectionAttribute);
+                            aNodeToCheck = vNodeToCheck.cell(row, col); //newANode is the next node to check to go further down the tree.
+                            if(aNodeToCheck != null){
+                                match(event, aNodeToCheck, vNodeToCheck, sink, intersectionAttribute);
+                            }
                         }
                     }
                 }
                 //Go into intersecting cells(A' and B' from the article) and check for matches
                 intersectionAttribute.add(eventAttribute);
                 for(int row=index; row<nbrCells; row++){
-                    aNodeToCheck = vNodeToCheck.triangleStructure[row][index];
-                    match(event, aNodeToCheck, vNodeToCheck, matchedSubs, intersectionAttribute);
+                    aNodeToCheck = vNodeToCheck.cell(row, index);
+                    if(aNodeToCheck != null){
+                        match(event, aNodeToCheck, vNodeToCheck, sink, intersectionAttribute);
+                    }
                 }
                 for(int col=0; col < index; col++){
-                    aNodeToCheck = vNodeToCheck.triangleStructure[index][col];
-                    match(event, aNodeToCheck, vNodeToCheck, matchedSubs, intersectionAttribute);
+                    aNodeToCheck = vNodeToCheck.cell(index, col);
+                    if(aNodeToCheck != null){
+                        match(event, aNodeToCheck, vNodeToCheck, sink, intersectionAttribute);
+                    }
                 }
             }
         }
-        return  matchedSubs;
     }
 
     /**
@@ -99,45 +195,170 @@ public class MatchingAlgoGemTree implements MatchingAlgo {
      * @return the vNode corresponding to the attribute from the anode's att dir, null if there is none
      */
     public VNode getVNodeFromAttribute(int attribute, ANode aNode){
-        return aNode.attributeDirectory.getOrDefault(attribute, null);
+        return aNode.getVNode(attribute);
     }
 
     /**
-     * Tries to add subscriptions to matchedSubs. For each subscription in the Anode's bucket, check all predicates against event's attribute.
+     * Tries to add subscriptions to the sink. For each subscription in the Anode's bucket, check all predicates against event's attribute.
      * @param event
      * @param aNode
      * @param vNode
-     * @param matchedSubs
+     * @param sink
      * @param intersectionAttribute
      */
-    public void checkANode(Event event, ANode aNode, VNode vNode, List<Subscription> matchedSubs, Set<Integer> intersectionAttribute){
-        boolean isMatched;
+    public void checkANode(PrimitiveEvent event, ANode aNode, VNode vNode, MatchSink sink, IntersectionAttributes intersectionAttribute){
+        for(int i = 0; i < aNode.bucket.size(); i++){
+            Subscription sub = aNode.bucket.get(i);
+            if(isMatched(event, sub, aNode, intersectionAttribute)){
+                sink.accept(sub);
+            }
+        }
+    }
+
+    /**
+     * Checks all predicates of the subscription against the event's attributes.
+     * Predicates on attributes in the path are only checked if the event went through an intersecting cell of that attribute.
+     * The path is looked up in the ANode's precomputed path attributes.
+     * @param event
+     * @param sub
+     * @param aNode
+     * @param intersectionAttribute
+     * @return true if the subscription matches the event
+     */
+    private boolean isMatched(PrimitiveEvent event, Subscription sub, ANode aNode, IntersectionAttributes intersectionAttribute){
         int value;
+        for(Predicate pred: sub.predicateArray()){
+            if(event.contains(pred.attribute)){
+                value = event.get(pred.attribute);
+                if(!aNode.isInPath(pred.attribute)){
+                    if(isOutsideSubRange(value, pred)){
+                        return false;
+                    }
+                }else if(intersectionAttribute.contains(pred.attribute)){
+                    if(isOutsideSubRange(value, pred)) {
+                        return false;
+                    }
+                }
+            }else{
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Matches a batch of events. Every ANode is visited once for all events of the batch whose paths go through it.
+     * @param events
+     * @return the lists of matched subscriptions, one list per event in the same order as the events
+     */
+    @Override
+    public List<List<Subscription>> matchBatch(Event[] events) {
+        List<List<Subscription>> matchedSubs = new ArrayList<>();
+        List<IntersectionAttributes> intersectionAttributes = new ArrayList<>();
+        PrimitiveEvent[] primitiveEvents = new PrimitiveEvent[events.length];
+        int[] eventIndexes = new int[events.length];
+        for(int i = 0; i < events.length; i++){
+            primitiveEvents[i] = events[i].toPrimitive();
+            matchedSubs.add(new ArrayList<>());
+            intersectionAttributes.add(new IntersectionAttributes(nbrTotalAttributes));
+            eventIndexes[i] = i;
+        }
+        matchBatch(primitiveEvents, eventIndexes, 0, events.length, root, null, matchedSubs, intersectionAttributes);
+        return matchedSubs;
+    }
+
+    /**
+     * Batch version of match. The events given by eventIndexes[from..to) are the events of the batch that reach the anode.
+     * For every VNode in the anode's att dir, the events are routed into the cells of the triangle structure and each cell is visited once with its events.
+     * The events of all cells are kept in one flat array, grouped by cell, so a cell is visited with its own range of that array.
+     * @param events
+     * @param eventIndexes
+     * @param from
+     * @param to
+     * @param aNode
+     * @param vNode
+     * @param matchedSubs
+     * @param intersectionAttributes
+     */
+    private void matchBatch(PrimitiveEvent[] events, int[] eventIndexes, int from, int to, ANode aNode, VNode vNode, List<List<Subscription>> matchedSubs, List<IntersectionAttributes> intersectionAttributes){
         for(Subscription sub : aNode.bucket){
-            isMatched = true;
-            for(Predicate pred: sub.predicates.values()){
-                if(event.attributeValuePairs.containsKey(pred.attribute)){
-                    value = event.attributeValuePairs.get(pred.attribute);
-                    if(!inPath(root, aNode, vNode, pred.attribute)){
-                        if(isOutsideSubRange(value, pred)){
-                            isMatched = false;
-                            break;
-                        }
-                    }else if(intersectionAttribute.contains(pred.attribute)){
-                        if(isOutsideSubRange(value, pred)) {
-                            isMatched = false;
-                            break;
-                        }
+            for(int e = from; e < to; e++){
+                int eventIndex = eventIndexes[e];
+                if(isMatched(events[eventIndex], sub, aNode, intersectionAttributes.get(eventIndex))){
+                    matchedSubs.get(eventIndex).add(sub);
+                }
+            }
+        }
+        if(aNode.nbrVNodes() == 0){
+            return;
+        }
+        int[] cells = new int[nbrCells * nbrCells]; //the cells of one event, as row * nbrCells + col
+        int[] cellStarts = new int[nbrCells * nbrCells + 1]; //cell -> start of its events in cellEvents, the counts while routing
+        int[] locations = new int[to - from];
+        for(int v = 0; v < aNode.nbrVNodes(); v++){
+            VNode vNodeToCheck = aNode.vNodeAt(v);
+            //count the events of each cell
+            Arrays.fill(cellStarts, 0);
+            for(int e = from; e < to; e++){
+                PrimitiveEvent event = events[eventIndexes[e]];
+                if(!event.contains(vNodeToCheck.attribute)){
+                    locations[e - from] = -1;
+                    continue;
+                }
+                locations[e - from] = location(event.get(vNodeToCheck.attribute));
+                intersectionAttributes.get(eventIndexes[e]).add(vNodeToCheck.attribute);
+                int nbrEventCells = cellsOf(locations[e - from], cells);
+                for(int c = 0; c < nbrEventCells; c++){
+                    cellStarts[cells[c] + 1]++;
+                }
+            }
+            for(int c = 0; c < nbrCells * nbrCells; c++){
+                cellStarts[c + 1] += cellStarts[c];
+            }
+            //route the events into their cells
+            int[] cellEvents = new int[cellStarts[nbrCells * nbrCells]]; //indexes of the events, grouped by cell
+            int[] cellEnds = Arrays.copyOf(cellStarts, nbrCells * nbrCells);
+            for(int e = from; e < to; e++){
+                if(locations[e - from] < 0){
+                    continue;
+                }
+                int nbrEventCells = cellsOf(locations[e - from], cells);
+                for(int c = 0; c < nbrEventCells; c++){
+                    cellEvents[cellEnds[cells[c]]++] = eventIndexes[e];
+                }
+            }
+            for(int row = 0; row < nbrCells; row++){
+                for(int col = 0; col <= row; col++){
+                    int cell = row * nbrCells + col;
+                    if(cellStarts[cell] < cellEnds[cell] && vNodeToCheck.cell(row, col) != null){
+                        matchBatch(events, cellEvents, cellStarts[cell], cellEnds[cell], vNodeToCheck.cell(row, col), vNodeToCheck, matchedSubs, intersectionAttributes);
                     }
-                }else{
-                    isMatched = false;
-                    break;
                 }
             }
-            if(isMatched){
-                matchedSubs.add(sub);
+        }
+    }
+
+    /**
+     * Writes the cells that an event value at the given location goes into, as row * nbrCells + col, the same cells as match visits.
+     * @param index the location of the event value
+     * @param cells
+     * @return the number of cells written
+     */
+    private int cellsOf(int index, int[] cells){
+        int nbrEventCells = 0;
+        for (int row = index + 1; row < nbrCells; row++) {
+            for (int col = 0; col < index; col++) {
+                cells[nbrEventCells++] = row * nbrCells + col;
             }
         }
+        //intersecting cells (A' and B' from the article)
+        for(int row=index; row<nbrCells; row++){
+            cells[nbrEventCells++] = row * nbrCells + index;
+        }
+        for(int col=0; col < index; col++){
+            cells[nbrEventCells++] = index * nbrCells + col;
+        }
+        return nbrEventCells;
     }
 
     /**
@@ -154,8 +375,10 @@ public class MatchingAlgoGemTree implements MatchingAlgo {
      * @param sub
      */
     @Override
-    public void insert(Subscription sub) {
+    public synchronized void insert(Subscription sub) {
+        sub.predicateArray();
         insert(sub, root, null);
+        changed();
     }
 
     /**
@@ -171,22 +394,21 @@ public class MatchingAlgoGemTree implements MatchingAlgo {
         int col;
         int row;
 
-        if(aNode.attributeDirectory.size() > 0){
+        if(aNode.nbrVNodes() > 0){
             for(int predAttribute: sub.predicates.keySet()){
-                if(!inPath(root, aNode, vNode, predAttribute)){
-                    for(VNode currentVNode: aNode.attributeDirectory.values()){
-                        if(currentVNode.attribute == predAttribute){
-                            foundAttribute = true;
-                            if(isRanked){
-                                if(nextOptimalVNodeInPath == null){
-                                    nextOptimalVNodeInPath = currentVNode;
-                                }
-                                if(currentVNode.ranking > nextOptimalVNodeInPath.ranking){
-                                    nextOptimalVNodeInPath = currentVNode; //Tanke: blir anode.next fel iom att vi baserar optimal på current node alltid och ej på rank?
-                                }
-                            }else{
+                if(!aNode.isInPath(predAttribute)){
+                    VNode currentVNode = aNode.getVNode(predAttribute);
+                    if(currentVNode != null){
+                        foundAttribute = true;
+                        if(isRanked){
+                            if(nextOptimalVNodeInPath == null){
                                 nextOptimalVNodeInPath = currentVNode;
                             }
+                            if(currentVNode.ranking > nextOptimalVNodeInPath.ranking){
+                                nextOptimalVNodeInPath = currentVNode; //Tanke: blir anode.next fel iom att vi baserar optimal på current node alltid och ej på rank?
+                            }
+                        }else{
+                            nextOptimalVNodeInPath = currentVNode;
                         }
                     }
                 }
@@ -196,7 +418,7 @@ public class MatchingAlgoGemTree implements MatchingAlgo {
         if(foundAttribute){
             col = location(sub.predicates.get(nextOptimalVNodeInPath.attribute).lowValue);
             row = location(sub.predicates.get(nextOptimalVNodeInPath.attribute).highValue);
-            ANode nextANodeInPath = nextOptimalVNodeInPath.triangleStructure[row][col];
+            ANode nextANodeInPath = nextOptimalVNodeInPath.cellOrCreate(row, col);
 
             insert(sub, nextANodeInPath, nextOptimalVNodeInPath);
             if(isRanked && vNode != null) {
@@ -205,17 +427,18 @@ public class MatchingAlgoGemTree implements MatchingAlgo {
         }else{
             // put the sub in the bucket and if ranked GEMTree, do the corresponding updating of n & h
             aNode.storeToBucket(sub, isRanked);
+            subLocations.put(sub.id, aNode);
             if(aNode.isOverflowing()){
-                int attributeSplit = aNode.selectMostPopularAttribute(root, vNode, splitThreshold);
+                int attributeSplit = aNode.selectMostPopularAttribute(splitThreshold);
                 if(attributeSplit > -1){
                     VNode newVNode = new VNode(nbrCells, attributeSplit, initialBucketSize, aNode);
                     moveSubs(attributeSplit, aNode, vNode, newVNode);
                     //update vNode descendants if ranked
                     if(isRanked && vNode != null) {
-                        vNode.decendents.add(newVNode);
+                        vNode.addDecendent(newVNode);
                     }
                     //update aNode
-                    aNode.attributeDirectory.put(attributeSplit, newVNode);
+                    aNode.putVNode(newVNode);
                 }else{
                     //if the split attribute is not powerful enough it is not worth doing the split. Instead, we increase the capacity in the node. See text.
                     int newBucketCapacity = (int) (aNode.currentBucketCapacity *  increaseBucketSizeFactor);
@@ -226,58 +449,184 @@ public class MatchingAlgoGemTree implements MatchingAlgo {
     }
 
     /**
-     * Based on the split attribute, finds the subscriptions in the bucket that shares that attribute and that are supposed to be put in the newly created VNode.
-     * It then saves these one by one to the new VNode's triangle structure in an ANode's corresponding bucket based on their range and removes them from the old bucket
-     * @param attributeSplit
+     * Bulk-loads the subscriptions if the tree is empty, otherwise inserts them one by one.
+     * @param subs
+     */
+    @Override
+    public synchronized void insertAll(Subscription[] subs) {
+        if(!root.isEmpty()){
+            for(Subscription sub : subs){
+                insert(sub);
+            }
+            return;
+        }
+        for(Subscription sub : subs){
+            sub.predicateArray();
+        }
+        ForkJoinPool.commonPool().invoke(new BulkLoad(root, Arrays.asList(subs)));
+        locateSubs(root);
+        changed();
+    }
+
+    /** Builds the subtree of an ANode from its subscriptions, see bulkLoad. */
+    private class BulkLoad extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ANode aNode;
+        private final List<Subscription> subs;
+
+        BulkLoad(ANode aNode, List<Subscription> subs) {
+            this.aNode = aNode;
+            this.subs = subs;
+        }
+
+        @Override
+        protected void compute() {
+            bulkLoad(aNode, subs);
+        }
+    }
+
+    /**
+     * Stores the subs in the bucket of the ANode and splits it like insert does on overflow, moving the subs with the split attribute into the cells of a new VNode.
+     * If no attribute is popular enough the capacity is increased to fit the bucket. The cells are then built, and once they are done the new VNodes are ranked.
+     * Only the ANode and the VNodes created here are written to, so sibling cells can be built at the same time.
      * @param aNode
-     * @param vNode
-     * @param newVNode
+     * @param subs
      */
-    public void moveSubs(int attributeSplit, ANode aNode, VNode vNode, VNode newVNode){
-        int col;
-        int row;
-        Iterator<Subscription> iter = aNode.bucket.iterator();
-        while(iter.hasNext()){
-            Subscription sub = iter.next();
-            for(Predicate pred : sub.predicates.values()){
-                if(pred.attribute == attributeSplit){
-                    col=location(pred.lowValue);
-                    row=location(pred.highValue);
-                    ANode aNodeNext = newVNode.triangleStructure[row][col];
-                    // put the sub in the bucket and if ranked GEMTree, do the corresponding updating of n & h
-                    aNodeNext.storeToBucket(sub, isRanked);
-                    //Remove sub (use iter to handle ConcurrentModificationException)
-                    iter.remove();
-                    // remove the sub in the bucket and if ranked GEMTree, do the corresponding updating of n & h
-                    aNode.removeFromBucket(sub, isRanked);
-                    break;
+    private void bulkLoad(ANode aNode, List<Subscription> subs){
+        for(Subscription sub : subs){
+            aNode.storeToBucket(sub, false);
+        }
+        List<VNode> newVNodes = new ArrayList<>();
+        List<BulkLoad> cellLoads = new ArrayList<>();
+        while(aNode.isOverflowing()){
+            int attributeSplit = aNode.selectMostPopularAttribute(splitThreshold);
+            if(attributeSplit == -1){
+                int newBucketCapacity = (int) (aNode.currentBucketCapacity *  increaseBucketSizeFactor);
+                aNode.setCurrentBucketCapacity(Math.max(newBucketCapacity, aNode.bucket.size() + 1));
+                break;
+            }
+            VNode newVNode = new VNode(nbrCells, attributeSplit, initialBucketSize, aNode);
+            List<List<Subscription>> cellSubs = new ArrayList<>(Collections.nCopies(nbrCells * nbrCells, null)); //row * nbrCells + col -> subs, null while empty
+            for(Subscription sub : aNode.takeFromBucket(attributeSplit, false)){
+                Predicate pred = sub.predicates.get(attributeSplit);
+                int cell = location(pred.highValue) * nbrCells + location(pred.lowValue);
+                if(cellSubs.get(cell) == null){
+                    cellSubs.set(cell, new ArrayList<>());
+                }
+                cellSubs.get(cell).add(sub);
+            }
+            for(int row = 0; row < nbrCells; row++){
+                for(int col = 0; col <= row; col++){
+                    List<Subscription> subsInCell = cellSubs.get(row * nbrCells + col);
+                    if(subsInCell != null){
+                        cellLoads.add(new BulkLoad(newVNode.cellOrCreate(row, col), subsInCell));
+                    }
+                }
+            }
+            aNode.putVNode(newVNode);
+            newVNodes.add(newVNode);
+        }
+        if(subs.size() >= BULK_LOAD_PARALLEL_THRESHOLD){
+            ForkJoinTask.invokeAll(cellLoads);
+        }else{
+            for(BulkLoad cellLoad : cellLoads){
+                bulkLoad(cellLoad.aNode, cellLoad.subs);
+            }
+        }
+        if(isRanked){
+            for(VNode newVNode : newVNodes){
+                newVNode.rankBulkLoaded(alpha);
+            }
+        }
+    }
+
+    /** Fills subLocations from the buckets of the ANode and the ANodes below it. */
+    private void locateSubs(ANode aNode){
+        for(Subscription sub : aNode.bucket){
+            subLocations.put(sub.id, aNode);
+        }
+        for(int v = 0; v < aNode.nbrVNodes(); v++){
+            VNode vNode = aNode.vNodeAt(v);
+            for(int row = 0; row < nbrCells; row++){
+                for(int col = 0; col <= row; col++){
+                    if(vNode.cell(row, col) != null){
+                        locateSubs(vNode.cell(row, col));
+                    }
                 }
             }
         }
     }
 
     /**
-     * Checks if an attribute exists in the path's VNodes from the current ANode to the root ANode.
-     * @param root
-     * @param aNode
-     * @param vNode
-     * @param attribute
-     * @return True if the attribute exists in the path, false otherwise.
+     * Removes the sub from the bucket it is stored in, found through subLocations.
+     * If the removal leaves ANodes empty, VNodes without subscriptions are removed from the tree bottom up.
+     * @param subId
      */
-    public static boolean inPath(ANode root, ANode aNode, VNode vNode, int attribute){
-        ANode aNodeToCheck = aNode;
-        VNode vNodeToCheck = vNode;
-        if(aNode == root && vNode == null){
-            return false;
+    @Override
+    public synchronized void remove(int subId) {
+        ANode aNode = subLocations.remove(subId);
+        if(aNode == null){
+            return;
         }
-        while(aNodeToCheck.parentVNode != null){
-            if(vNodeToCheck.attribute == attribute){
-                return true;
+        changed();
+        for(Subscription sub : aNode.bucket){
+            if(sub.id == subId){
+                // remove the sub in the bucket and if ranked GEMTree, do the corresponding updating of n & h
+                aNode.removeFromBucket(sub, isRanked);
+                break;
             }
-            vNodeToCheck = aNodeToCheck.parentVNode;
-            aNodeToCheck = vNodeToCheck.parentANode;
         }
-        return false;
+        ANode lowestRemainingANode = shrink(aNode);
+        if(isRanked){
+            VNode vNodeToUpdate = lowestRemainingANode.parentVNode;
+            while(vNodeToUpdate != null){
+                vNodeToUpdate.updateRanking(alpha);
+                vNodeToUpdate = vNodeToUpdate.parentANode.parentVNode;
+            }
+        }
+    }
+
+    /**
+     * Walks from the ANode towards the root and removes every VNode whose triangle structure no longer holds any subscription.
+     * @param aNode
+     * @return the lowest ANode that is still part of the tree
+     */
+    private ANode shrink(ANode aNode){
+        while(aNode != root && aNode.isEmpty()){
+            VNode vNode = aNode.parentVNode;
+            if(!vNode.isEmpty()){
+                break;
+            }
+            ANode parentANode = vNode.parentANode;
+            parentANode.removeVNode(vNode.attribute);
+            if(parentANode.parentVNode != null){
+                parentANode.parentVNode.removeDecendent(vNode);
+            }
+            aNode = parentANode;
+        }
+        return aNode;
+    }
+
+    /**
+     * Based on the split attribute, takes the subscriptions in the bucket that shares that attribute out of it in one pass,
+     * and saves them one by one to the new VNode's triangle structure in an ANode's corresponding bucket based on their range.
+     * @param attributeSplit
+     * @param aNode
+     * @param vNode
+     * @param newVNode
+     */
+    public void moveSubs(int attributeSplit, ANode aNode, VNode vNode, VNode newVNode){
+        int col;
+        int row;
+        for(Subscription sub : aNode.takeFromBucket(attributeSplit, isRanked)){
+            Predicate pred = sub.predicates.get(attributeSplit);
+            col=location(pred.lowValue);
+            row=location(pred.highValue);
+            ANode aNodeNext = newVNode.cellOrCreate(row, col);
+            // put the sub in the bucket and if ranked GEMTree, do the corresponding updating of n & h
+            aNodeNext.storeToBucket(sub, isRanked);
+            subLocations.put(sub.id, aNodeNext);
+        }
     }
 
     /**
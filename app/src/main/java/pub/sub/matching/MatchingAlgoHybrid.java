@@ -0,0 +1,201 @@
+package pub.sub.matching;
+
+import pub.sub.matching.ExpressionStructure.And;
+import pub.sub.matching.ExpressionStructure.Expression;
+import pub.sub.matching.ExpressionStructure.ExpressionParser;
+import pub.sub.matching.ExpressionStructure.Range;
+
+import org.projectnessie.cel.tools.Script;
+import org.projectnessie.cel.tools.ScriptCreateException;
+import org.projectnessie.cel.tools.ScriptException;
+import org.projectnessie.cel.tools.ScriptHost;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Hybrid matches expression string subscriptions with the help of an index algorithm for predicate subscriptions, e.g. GEM-Tree.
+ *  At insertion, the expression is split at its top-level && and each part is parsed on its own. The parts that are ranges on an attribute
+ *  within the value domain become the predicates of a subscription with the same id in the index, at most one per attribute.
+ *  The remaining parts are the residual: the ones that parse are evaluated natively, the others are joined into one cel script.
+ *  In match(), only the subscriptions the index matched have their residual evaluated. Subscriptions without any indexed range are checked one by one.
+ *  All parts must be true for a subscription to match, which is the same as the whole expression being true in cel.
+ *  A subscription whose cel residual could not be built never matches, as in linear-string. It is kept out of the index and the unindexed list.
+ */
+public class MatchingAlgoHybrid implements MatchingAlgo {
+    private final MatchingAlgo index;
+    private final int valDom;
+    private final ScriptHost scriptHost; //builds the cel residuals, not shared with other engines
+    HashMap<Integer, HybridSubscription> subs = new HashMap<>(); //subId -> sub with its residual, also the subs that never match
+    List<HybridSubscription> unindexed = new ArrayList<>(); //subs without any indexed range
+    private final HashMap<Integer, Integer> unindexedSlots = new HashMap<>(); //subId -> index in unindexed
+
+    /** A subscription and the parts of its expression that the index does not check */
+    static class HybridSubscription {
+        final Subscription sub;
+        final boolean isIndexed;
+        final boolean isBroken; //the cel residual could not be built, so the sub never matches
+        final Expression residual; //null if all parsed parts are indexed
+        final Script celResidual; //null if all parts could be parsed
+
+        HybridSubscription(Subscription sub, boolean isIndexed, boolean isBroken, Expression residual, Script celResidual) {
+            this.sub = sub;
+            this.isIndexed = isIndexed;
+            this.isBroken = isBroken;
+            this.residual = residual;
+            this.celResidual = celResidual;
+        }
+    }
+
+    /**
+     * @param index the algo that matches the indexed ranges
+     * @param valDom
+     * @param scriptHost builds the cel residuals, see MatchingAlgoLinearString.newScriptHost
+     */
+    public MatchingAlgoHybrid(MatchingAlgo index, int valDom, ScriptHost scriptHost) {
+        this.index = index;
+        this.valDom = valDom;
+        this.scriptHost = scriptHost;
+    }
+
+    /** The arguments that bind the event for the cel residuals, created from the primitive event the first time a residual needs them */
+    private static class CelArguments {
+        Map<String, Object> arguments;
+    }
+
+    @Override
+    public List<Subscription> match(Event event) {
+        MatchCollector collector = new MatchCollector();
+        match(event, collector);
+        return collector.matchedSubs;
+    }
+
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        match(event, null, sink);
+    }
+
+    @Override
+    public void match(Event event, MatchSink sink) {
+        match(event.toPrimitive(), event, sink);
+    }
+
+    /** The Event the cel residuals are evaluated over is created from the primitive event the first time it is needed, if not given. */
+    private void match(PrimitiveEvent event, Event celEvent, MatchSink sink) {
+        CelArguments arguments = new CelArguments();
+        if(celEvent != null){
+            arguments.arguments = MatchingAlgoLinearString.arguments(celEvent);
+        }
+        index.match(event, subId -> {
+            HybridSubscription hybridSub = subs.get(subId);
+            if(isResidualMatched(hybridSub, event, arguments)){
+                sink.accept(hybridSub.sub);
+            }
+        });
+        for(int i = 0; i < unindexed.size(); i++){
+            HybridSubscription hybridSub = unindexed.get(i);
+            if(isResidualMatched(hybridSub, event, arguments)){
+                sink.accept(hybridSub.sub);
+            }
+        }
+    }
+
+    private boolean isResidualMatched(HybridSubscription hybridSub, PrimitiveEvent event, CelArguments arguments) {
+        if(hybridSub.residual != null && hybridSub.residual.evaluate(event) != Expression.TRUE){
+            return false;
+        }
+        if(hybridSub.celResidual == null){
+            return true;
+        }
+        if(arguments.arguments == null){
+            arguments.arguments = MatchingAlgoLinearString.arguments(event.toEvent());
+        }
+        try {
+            return Boolean.TRUE.equals(hybridSub.celResidual.execute(Boolean.class, arguments.arguments));
+        } catch (ScriptException e) {
+            //Attribute does not exists -> false
+            return false;
+        }
+    }
+
+    @Override
+    public void insert(Subscription sub) {
+        List<Expression> atoms = new ArrayList<>();
+        StringBuilder celResidual = new StringBuilder();
+        for(String conjunct : ExpressionParser.splitConjuncts(sub.expressionCriteria)){
+            Expression expression;
+            try {
+                expression = ExpressionParser.parse(conjunct);
+            } catch (IllegalArgumentException e) {
+                if(celResidual.length() > 0){
+                    celResidual.append(" && ");
+                }
+                celResidual.append('(').append(conjunct).append(')');
+                continue;
+            }
+            atoms.addAll(Arrays.asList(expression instanceof And ? ((And) expression).operands() : new Expression[]{expression}));
+        }
+        //bounds from different parts, e.g. a > 5 && a < 10, are joined into ranges too
+        ExpressionParser.joinRanges(atoms);
+
+        HashMap<Integer, Predicate> predicates = new HashMap<>();
+        List<Expression> residuals = new ArrayList<>();
+        for(Expression atom : atoms){
+            if(atom instanceof Range && isIndexable((Range) atom) && !predicates.containsKey(((Range) atom).attribute)){
+                Range range = (Range) atom;
+                predicates.put(range.attribute, new Predicate(range.attribute, (int) range.lowValue, (int) range.highValue));
+            }else{
+                residuals.add(atom);
+            }
+        }
+
+        Expression residual = residuals.isEmpty() ? null : residuals.size() == 1 ? residuals.get(0) : new And(residuals.toArray(new Expression[0]));
+        Script script = null;
+        boolean isBroken = false;
+        if(celResidual.length() > 0){
+            try {
+                script = MatchingAlgoLinearString.buildScript(scriptHost, celResidual.toString());
+            } catch (ScriptCreateException e) {
+                e.printStackTrace();
+                isBroken = true;
+            }
+        }
+        HybridSubscription hybridSub = new HybridSubscription(sub, !predicates.isEmpty(), isBroken, residual, script);
+        subs.put(sub.id, hybridSub);
+        if(hybridSub.isBroken){
+            return;
+        }
+        if(hybridSub.isIndexed){
+            index.insert(new Subscription(predicates, sub.id));
+        }else{
+            unindexedSlots.put(sub.id, unindexed.size());
+            unindexed.add(hybridSub);
+        }
+    }
+
+    /** Only non-empty ranges within the value domain are indexed, since the index algorithms only handle values in it. */
+    private boolean isIndexable(Range range) {
+        return range.lowValue >= 0 && range.highValue < valDom && range.lowValue <= range.highValue;
+    }
+
+    @Override
+    public void remove(int subId) {
+        HybridSubscription hybridSub = subs.remove(subId);
+        if(hybridSub == null || hybridSub.isBroken){
+            return;
+        }
+        if(hybridSub.isIndexed){
+            index.remove(subId);
+            return;
+        }
+        //move the last unindexed sub into the removed slot
+        int slot = unindexedSlots.remove(subId);
+        HybridSubscription last = unindexed.remove(unindexed.size() - 1);
+        if(slot < unindexed.size()){
+            unindexed.set(slot, last);
+            unindexedSlots.put(last.sub.id, slot);
+        }
+    }
+}
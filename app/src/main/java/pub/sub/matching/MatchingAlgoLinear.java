@@ -1,6 +1,7 @@
 package pub.sub.matching;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 /** Linear is the implementation of "no algorithm" for event matching algorithms. We call it linear as we are linearly searching through each subscription and its predicates.
@@ -10,29 +11,74 @@ import java.util.List;
 public class MatchingAlgoLinear implements MatchingAlgo {
 
     List<Subscription> subs = new ArrayList();
+    HashMap<Integer, Integer> subIndexes = new HashMap<>(); //subId -> index in subs
     @Override
     public List<Subscription> match(Event event) {
-        List<Subscription> matchedSubs = new ArrayList<>();
+        MatchCollector collector = new MatchCollector();
+        match(event, collector);
+        return collector.matchedSubs;
+    }
+
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        for(int i = 0; i < subs.size(); i++){
+            Subscription sub = subs.get(i);
+            if(isMatched(sub, event)){
+                sink.accept(sub);
+            }
+        }
+    }
+
+    /** Scans the subscription list once for the whole batch, checking each subscription against every event before moving on. */
+    @Override
+    public List<List<Subscription>> matchBatch(Event[] events) {
+        List<List<Subscription>> matchedSubs = new ArrayList<>();
+        for(int i = 0; i < events.length; i++){
+            matchedSubs.add(new ArrayList<>());
+        }
+        PrimitiveEvent[] primitiveEvents = new PrimitiveEvent[events.length];
+        for(int i = 0; i < events.length; i++){
+            primitiveEvents[i] = events[i].toPrimitive();
+        }
         for(Subscription sub : subs){
-            boolean matched = true;
-            for(Predicate currentPred : sub.predicates.values()){
-                if(!event.attributeValuePairs.containsKey(currentPred.attribute)){
-                    matched = false;
-                    break;
-                } else if(!(event.attributeValuePairs.get(currentPred.attribute) >= currentPred.lowValue && event.attributeValuePairs.get(currentPred.attribute) <= currentPred.highValue)) {
-                    matched = false;
-                    break;
+            for(int i = 0; i < events.length; i++){
+                if(isMatched(sub, primitiveEvents[i])){
+                    matchedSubs.get(i).add(sub);
                 }
             }
-            if(matched){
-                matchedSubs.add(sub);
-            }
         }
         return matchedSubs;
     }
 
+    private boolean isMatched(Subscription sub, PrimitiveEvent event) {
+        for(Predicate currentPred : sub.predicateArray()){
+            if(!event.contains(currentPred.attribute)){
+                return false;
+            } else if(!(event.get(currentPred.attribute) >= currentPred.lowValue && event.get(currentPred.attribute) <= currentPred.highValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public void insert(Subscription sub) {
+        sub.predicateArray();
+        subIndexes.put(sub.id, subs.size());
         subs.add(sub);
     }
+
+    /** Removes by moving the last subscription into the removed slot, so no shifting of the list is needed. */
+    @Override
+    public void remove(int subId) {
+        Integer index = subIndexes.remove(subId);
+        if(index == null){
+            return;
+        }
+        Subscription last = subs.remove(subs.size() - 1);
+        if(index < subs.size()){
+            subs.set(index, last);
+            subIndexes.put(last.id, index);
+        }
+    }
 }
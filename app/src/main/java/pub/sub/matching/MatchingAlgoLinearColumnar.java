@@ -0,0 +1,151 @@
+package pub.sub.matching;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/** Linear Columnar is the same search as linear, i.e. each subscription is checked predicate by predicate, but with a cache friendly layout.
+ *  Instead of a list of subscriptions with predicate maps, all predicates are packed into flat int arrays (struct of arrays): attribute, low and high value.
+ *  The predicates of a subscription are stored next to each other, given by per-subscription offsets, so match() scans the arrays sequentially.
+ *  Removed subscriptions are marked and skipped, and the arrays are compacted once half of the slots are removed.
+ */
+public class MatchingAlgoLinearColumnar implements MatchingAlgo {
+    HashMap<Integer, Subscription> subs = new HashMap<>();
+    HashMap<Integer, Integer> slots = new HashMap<>(); //subId -> slot
+
+    int nbrSlots; //number of subscriptions in the arrays, including removed ones
+    int nbrRemoved;
+    int[] subIds = new int[16]; //slot -> subId
+    boolean[] isRemoved = new boolean[16]; //slot -> removed
+    int[] predicateOffsets = new int[17]; //slot -> index of its first predicate, predicateOffsets[nbrSlots] is the total number of predicates
+
+    int[] attributes = new int[64]; //predicate -> attribute
+    int[] lowValues = new int[64]; //predicate -> lowValue
+    int[] highValues = new int[64]; //predicate -> highValue
+
+    @Override
+    public List<Subscription> match(Event event) {
+        MatchCollector collector = new MatchCollector(subs::get);
+        match(event, collector);
+        return collector.matchedSubs;
+    }
+
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        for(int slot = 0; slot < nbrSlots; slot++){
+            if(!isRemoved[slot] && isMatched(slot, event)){
+                sink.accept(subIds[slot]);
+            }
+        }
+    }
+
+    /** Scans the arrays once for the whole batch, checking each subscription against every event before moving on. */
+    @Override
+    public List<List<Subscription>> matchBatch(Event[] events) {
+        List<List<Subscription>> matchedSubs = new ArrayList<>();
+        PrimitiveEvent[] primitiveEvents = new PrimitiveEvent[events.length];
+        for(int i = 0; i < events.length; i++){
+            matchedSubs.add(new ArrayList<>());
+            primitiveEvents[i] = events[i].toPrimitive();
+        }
+        for(int slot = 0; slot < nbrSlots; slot++){
+            if(isRemoved[slot]){
+                continue;
+            }
+            for(int i = 0; i < events.length; i++){
+                if(isMatched(slot, primitiveEvents[i])){
+                    matchedSubs.get(i).add(subs.get(subIds[slot]));
+                }
+            }
+        }
+        return matchedSubs;
+    }
+
+    /** Checks the predicates of the subscription in the slot, stopping at the first predicate that is not satisfied. */
+    private boolean isMatched(int slot, PrimitiveEvent event) {
+        int end = predicateOffsets[slot + 1];
+        for(int pred = predicateOffsets[slot]; pred < end; pred++){
+            int attribute = attributes[pred];
+            if(!event.contains(attribute)){
+                return false;
+            }
+            int value = event.get(attribute);
+            if(value < lowValues[pred] || value > highValues[pred]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void insert(Subscription sub) {
+        subs.put(sub.id, sub);
+        slots.put(sub.id, nbrSlots);
+        append(sub.id, sub.predicateArray());
+    }
+
+    private void append(int subId, Predicate[] predicates) {
+        if(nbrSlots + 1 >= predicateOffsets.length){
+            int newLength = predicateOffsets.length * 2;
+            subIds = Arrays.copyOf(subIds, newLength);
+            isRemoved = Arrays.copyOf(isRemoved, newLength);
+            predicateOffsets = Arrays.copyOf(predicateOffsets, newLength + 1);
+        }
+        int start = predicateOffsets[nbrSlots];
+        int end = start + predicates.length;
+        if(end > attributes.length){
+            int newLength = Math.max(end, attributes.length * 2);
+            attributes = Arrays.copyOf(attributes, newLength);
+            lowValues = Arrays.copyOf(lowValues, newLength);
+            highValues = Arrays.copyOf(highValues, newLength);
+        }
+        for(int i = 0; i < predicates.length; i++){
+            attributes[start + i] = predicates[i].attribute;
+            lowValues[start + i] = predicates[i].lowValue;
+            highValues[start + i] = predicates[i].highValue;
+        }
+        subIds[nbrSlots] = subId;
+        isRemoved[nbrSlots] = false;
+        predicateOffsets[nbrSlots + 1] = end;
+        nbrSlots++;
+    }
+
+    /** Marks the slot of the subscription as removed. When half of the slots are removed, the arrays are rebuilt without them. */
+    @Override
+    public void remove(int subId) {
+        Integer slot = slots.remove(subId);
+        if(slot == null){
+            return;
+        }
+        subs.remove(subId);
+        isRemoved[slot] = true;
+        nbrRemoved++;
+        if(nbrRemoved * 2 > nbrSlots){
+            compact();
+        }
+    }
+
+    /** Moves the remaining subscriptions to the front of the arrays. A slot and its predicates are never moved to a later position, so it is done in place. */
+    private void compact() {
+        int oldNbrSlots = nbrSlots;
+        nbrSlots = 0;
+        nbrRemoved = 0;
+        for(int oldSlot = 0; oldSlot < oldNbrSlots; oldSlot++){
+            if(isRemoved[oldSlot]){
+                continue;
+            }
+            int start = predicateOffsets[oldSlot];
+            int length = predicateOffsets[oldSlot + 1] - start;
+            int newStart = predicateOffsets[nbrSlots];
+            System.arraycopy(attributes, start, attributes, newStart, length);
+            System.arraycopy(lowValues, start, lowValues, newStart, length);
+            System.arraycopy(highValues, start, highValues, newStart, length);
+            subIds[nbrSlots] = subIds[oldSlot];
+            isRemoved[nbrSlots] = false;
+            predicateOffsets[nbrSlots + 1] = newStart + length;
+            slots.put(subIds[nbrSlots], nbrSlots);
+            nbrSlots++;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package pub.sub.matching;
+
+import pub.sub.matching.ExpressionStructure.Expression;
+import pub.sub.matching.ExpressionStructure.ExpressionParser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/** Linear Compiled handles the same expression string subscriptions as linear-string, but without cel for the expressions it can parse.
+ *  Each expression is parsed at insertion into a tree of Expression nodes (comparisons, ranges, &&, || and !) that read the attribute values straight from the primitive event.
+ *  Expressions that use something the parser does not support are given to an inner linear-string, which evaluates them with cel.
+ *  Subscriptions with the same expression string share one compiled expression.
+ */
+public class MatchingAlgoLinearCompiled implements MatchingAlgo {
+    Subscription[] subs = new Subscription[16]; //slot -> sub
+    Expression[] expressions = new Expression[16]; //slot -> compiled expression
+    int nbrSubs;
+    HashMap<Integer, Integer> slots = new HashMap<>(); //subId -> slot, only for compiled subs
+    HashMap<String, Expression> compiled = new HashMap<>(); //expression string -> compiled expression
+    private final HashMap<String, Integer> nbrExpressionUsers = new HashMap<>(); //expression string -> number of subs using its compiled expression
+    MatchingAlgoLinearString fallback = new MatchingAlgoLinearString(); //the subs whose expressions could not be compiled
+
+    @Override
+    public List<Subscription> match(Event event) {
+        MatchCollector collector = new MatchCollector();
+        match(event, collector);
+        return collector.matchedSubs;
+    }
+
+    /** The event is only converted back to an Event if some subscription is evaluated with cel. */
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        matchCompiled(event, sink);
+        if(!fallback.subs.isEmpty()){
+            fallback.match(event.toEvent(), sink);
+        }
+    }
+
+    @Override
+    public void match(Event event, MatchSink sink) {
+        matchCompiled(event.toPrimitive(), sink);
+        if(!fallback.subs.isEmpty()){
+            fallback.match(event, sink);
+        }
+    }
+
+    private void matchCompiled(PrimitiveEvent event, MatchSink sink) {
+        for(int slot = 0; slot < nbrSubs; slot++){
+            if(expressions[slot].evaluate(event) == Expression.TRUE){
+                sink.accept(subs[slot]);
+            }
+        }
+    }
+
+    @Override
+    public void insert(Subscription sub) {
+        Expression expression = compiled.get(sub.expressionCriteria);
+        if(expression == null){
+            try {
+                expression = ExpressionParser.parse(sub.expressionCriteria);
+            } catch (IllegalArgumentException e) {
+                fallback.insert(sub);
+                return;
+            }
+            compiled.put(sub.expressionCriteria, expression);
+        }
+        nbrExpressionUsers.merge(sub.expressionCriteria, 1, Integer::sum);
+        if(nbrSubs == subs.length){
+            subs = Arrays.copyOf(subs, nbrSubs * 2);
+            expressions = Arrays.copyOf(expressions, nbrSubs * 2);
+        }
+        subs[nbrSubs] = sub;
+        expressions[nbrSubs] = expression;
+        slots.put(sub.id, nbrSubs);
+        nbrSubs++;
+    }
+
+    /** Removes by moving the last subscription into the removed slot, as in linear-string. The compiled expression is dropped with its last sub. */
+    @Override
+    public void remove(int subId) {
+        Integer slot = slots.remove(subId);
+        if(slot == null){
+            fallback.remove(subId);
+            return;
+        }
+        String expression = subs[slot].expressionCriteria;
+        if(nbrExpressionUsers.merge(expression, -1, Integer::sum) == 0){
+            nbrExpressionUsers.remove(expression);
+            compiled.remove(expression);
+        }
+        nbrSubs--;
+        if(slot < nbrSubs){
+            subs[slot] = subs[nbrSubs];
+            expressions[slot] = expressions[nbrSubs];
+            slots.put(subs[slot].id, slot);
+        }
+        subs[nbrSubs] = null;
+        expressions[nbrSubs] = null;
+    }
+}
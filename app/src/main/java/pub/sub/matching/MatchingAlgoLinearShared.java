@@ -0,0 +1,98 @@
+package pub.sub.matching;
+
+import pub.sub.matching.ExpressionStructure.AtomProgram;
+import pub.sub.matching.ExpressionStructure.AtomTable;
+import pub.sub.matching.ExpressionStructure.AtomValues;
+import pub.sub.matching.ExpressionStructure.Expression;
+import pub.sub.matching.ExpressionStructure.ExpressionParser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/** Linear Shared handles the same expression string subscriptions as linear-string, but shares the evaluation of identical atoms between subscriptions.
+ *  Each expression is parsed at insertion, and its comparisons and ranges are interned in one AtomTable for all subscriptions.
+ *  In match(), every distinct atom on an attribute of the event is evaluated once into bitsets, and each subscription's boolean structure
+ *  is then evaluated over the bitsets as a small postfix program. Expressions the parser does not support are evaluated with cel by an inner linear-string.
+ */
+public class MatchingAlgoLinearShared implements MatchingAlgo {
+    Subscription[] subs = new Subscription[16]; //slot -> sub
+    AtomProgram[] programs = new AtomProgram[16]; //slot -> program of the sub's expression
+    int nbrSubs;
+    HashMap<Integer, Integer> slots = new HashMap<>(); //subId -> slot, only for parsed subs
+    AtomTable atoms = new AtomTable();
+    MatchingAlgoLinearString fallback = new MatchingAlgoLinearString(); //the subs whose expressions could not be parsed
+    private final ThreadLocal<AtomValues> atomValues = ThreadLocal.withInitial(AtomValues::new); //reusable per matching thread
+
+    @Override
+    public List<Subscription> match(Event event) {
+        MatchCollector collector = new MatchCollector();
+        match(event, collector);
+        return collector.matchedSubs;
+    }
+
+    /** The event is only converted back to an Event if some subscription is evaluated with cel. */
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        matchShared(event, sink);
+        if(!fallback.subs.isEmpty()){
+            fallback.match(event.toEvent(), sink);
+        }
+    }
+
+    @Override
+    public void match(Event event, MatchSink sink) {
+        matchShared(event.toPrimitive(), sink);
+        if(!fallback.subs.isEmpty()){
+            fallback.match(event, sink);
+        }
+    }
+
+    private void matchShared(PrimitiveEvent event, MatchSink sink) {
+        AtomValues values = atomValues.get();
+        atoms.evaluate(event, values);
+        for(int slot = 0; slot < nbrSubs; slot++){
+            if(programs[slot].evaluate(values) == Expression.TRUE){
+                sink.accept(subs[slot]);
+            }
+        }
+    }
+
+    @Override
+    public void insert(Subscription sub) {
+        Expression expression;
+        try {
+            expression = ExpressionParser.parse(sub.expressionCriteria);
+        } catch (IllegalArgumentException e) {
+            fallback.insert(sub);
+            return;
+        }
+        if(nbrSubs == subs.length){
+            subs = Arrays.copyOf(subs, nbrSubs * 2);
+            programs = Arrays.copyOf(programs, nbrSubs * 2);
+        }
+        subs[nbrSubs] = sub;
+        programs[nbrSubs] = AtomProgram.compile(expression, atoms);
+        slots.put(sub.id, nbrSubs);
+        nbrSubs++;
+    }
+
+    /** Removes by moving the last subscription into the removed slot, as in linear-string. Atoms no other subscription uses are dropped. */
+    @Override
+    public void remove(int subId) {
+        Integer slot = slots.remove(subId);
+        if(slot == null){
+            fallback.remove(subId);
+            return;
+        }
+        programs[slot].release(atoms);
+        nbrSubs--;
+        if(slot < nbrSubs){
+            subs[slot] = subs[nbrSubs];
+            programs[slot] = programs[nbrSubs];
+            slots.put(subs[slot].id, slot);
+        }
+        subs[nbrSubs] = null;
+        programs[nbrSubs] = null;
+    }
+}
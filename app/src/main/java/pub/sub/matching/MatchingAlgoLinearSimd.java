@@ -0,0 +1,92 @@
+package pub.sub.matching;
+
+import pub.sub.matching.LinearStructure.PredicateBlocks;
+import pub.sub.matching.LinearStructure.VectorKernel;
+
+import java.util.Arrays;
+
+/** Linear SIMD is linear columnar where the predicates are checked for several subscriptions per instruction with the JDK Vector API.
+ *  The columnar arrays are transposed into PredicateBlocks on the first match after an insert or remove, and matched by VectorKernel.
+ *  The Vector API is an incubator module that has to be added with `--add-modules jdk.incubator.vector`. Without it, the scalar scan of linear columnar is used.
+ */
+public class MatchingAlgoLinearSimd extends MatchingAlgoLinearColumnar {
+    static final boolean VECTOR_API_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private volatile PredicateBlocks blocks; //null when the columnar arrays have changed since the last transpose
+    private final ThreadLocal<int[]> denseValues = ThreadLocal.withInitial(() -> new int[0]); //attribute -> event value, MISSING if not in event
+
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        if(!VECTOR_API_AVAILABLE){
+            super.match(event, sink);
+            return;
+        }
+        PredicateBlocks current = blocks;
+        if(current == null){
+            current = transpose();
+        }
+        int[] dense = denseValues(current);
+        for(int a = 0; a < event.size(); a++){
+            if(event.attributes[a] < current.paddingAttribute()){
+                dense[event.attributes[a]] = event.values[a];
+            }
+        }
+        VectorKernel.match(current, dense, sink);
+        //reset only the attributes of the event
+        for(int a = 0; a < event.size(); a++){
+            if(event.attributes[a] < current.paddingAttribute()){
+                dense[event.attributes[a]] = PredicateBlocks.MISSING;
+            }
+        }
+    }
+
+    private int[] denseValues(PredicateBlocks current) {
+        int[] dense = denseValues.get();
+        if(dense.length != current.denseLength){
+            dense = new int[current.denseLength];
+            Arrays.fill(dense, PredicateBlocks.MISSING);
+            dense[current.paddingAttribute()] = 0;
+            denseValues.set(dense);
+        }
+        return dense;
+    }
+
+    private synchronized PredicateBlocks transpose() {
+        if(blocks != null){
+            return blocks;
+        }
+        int nbrLive = nbrSlots - nbrRemoved;
+        int maxPredicates = 0;
+        int maxAttribute = 0;
+        for(int slot = 0; slot < nbrSlots; slot++){
+            if(isRemoved[slot]){
+                continue;
+            }
+            maxPredicates = Math.max(maxPredicates, predicateOffsets[slot + 1] - predicateOffsets[slot]);
+            for(int pred = predicateOffsets[slot]; pred < predicateOffsets[slot + 1]; pred++){
+                maxAttribute = Math.max(maxAttribute, attributes[pred]);
+            }
+        }
+        PredicateBlocks transposed = new PredicateBlocks(nbrLive, maxPredicates, maxAttribute);
+        int newSlot = 0;
+        for(int slot = 0; slot < nbrSlots; slot++){
+            if(!isRemoved[slot]){
+                transposed.set(newSlot++, subIds[slot], attributes, lowValues, highValues, predicateOffsets[slot], predicateOffsets[slot + 1]);
+            }
+        }
+        blocks = transposed;
+        return transposed;
+    }
+
+    @Override
+    public void insert(Subscription sub) {
+        super.insert(sub);
+        blocks = null;
+    }
+
+    @Override
+    public void remove(int subId) {
+        super.remove(subId);
+        blocks = null;
+    }
+}
@@ -1,6 +1,7 @@
 package pub.sub.matching;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,56 +17,136 @@ import org.projectnessie.cel.types.jackson.JacksonRegistry;
  *  String in Linear String connects to the fact that this version can handle any type of string expression criteria as a subscription criteria.
  *  An example that can be handled is `pred1 && (pred2 && !pred3)`.
  *  It uses google common expression language (cel) to evaluate expressions
- *  Each expression is translated into a script at insertion of subscription.
- *  In match(), each script is evaluated
+ *  Each expression is translated into a script at insertion of subscription. All scripts of an engine are built by its own script host,
+ *  and subscriptions with the same expression string share one script. A subscription whose expression could not be built never matches.
+ *  In match(), each script is evaluated, with the event bound to the arguments once for all of them
  **/
 public class MatchingAlgoLinearString implements MatchingAlgo {
     boolean debug = false;
     List<SubscriptionWrapper> subs = new ArrayList();
+    HashMap<Integer, Integer> subIndexes = new HashMap<>(); //subId -> index in subs
+    private final ScriptHost scriptHost = newScriptHost(); //the registry of a host is not thread-safe, so hosts are never shared between engines
+    HashMap<String, Script> scripts = new HashMap<>(); //expression -> script shared by the subs with that expression
+    private final HashMap<String, Integer> nbrScriptUsers = new HashMap<>(); //expression -> number of subs using its script
 
     @Override
     public List<Subscription> match(Event event) {
-        List<Subscription> matchedSubs = new ArrayList<>();
-        for(SubscriptionWrapper subscript : subs){
+        MatchCollector collector = new MatchCollector();
+        match(event, collector);
+        return collector.matchedSubs;
+    }
+
+    /** The expressions are evaluated over Event.attributeValuePairs, so the primitive event is converted back to an Event. */
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        match(event.toEvent(), sink);
+    }
+
+    /** Pushes matched ids into the sink. Note that the evaluation of the cel scripts still allocates internally. */
+    @Override
+    public void match(Event event, MatchSink sink) {
+        Map<String, Object> arguments = arguments(event);
+        for(int i = 0; i < subs.size(); i++){
+            SubscriptionWrapper subscript = subs.get(i);
             try {
-                if(evaluateExpression(event, subscript)){
-                    matchedSubs.add(subscript.sub);
+                if(evaluateExpression(arguments, subscript)){
+                    sink.accept(subscript.sub);
                 }
             } catch (ScriptException e) {
                 //e.printStackTrace();
                 System.err.println("Could not evaluate expression string: " + subscript.sub.expressionCriteria + " for subid: "+ subscript.sub.id);
             }
         }
+    }
+
+    /** Scans the subscription list once for the whole batch, evaluating each script against every event before moving on. */
+    @Override
+    public List<List<Subscription>> matchBatch(Event[] events) {
+        List<List<Subscription>> matchedSubs = new ArrayList<>();
+        List<Map<String, Object>> arguments = new ArrayList<>();
+        for(int i = 0; i < events.length; i++){
+            matchedSubs.add(new ArrayList<>());
+            arguments.add(arguments(events[i]));
+        }
+        for(SubscriptionWrapper subscript : subs){
+            for(int i = 0; i < events.length; i++){
+                try {
+                    if(evaluateExpression(arguments.get(i), subscript)){
+                        matchedSubs.get(i).add(subscript.sub);
+                    }
+                } catch (ScriptException e) {
+                    System.err.println("Could not evaluate expression string: " + subscript.sub.expressionCriteria + " for subid: "+ subscript.sub.id);
+                }
+            }
+        }
         return matchedSubs;
     }
 
     @Override
     public void insert(Subscription sub) {
         //Wrap subscription together with script that will execute (using google cel - project nessie)
-        Script script = null;
-        try {
-            // Build the script factory
-            ScriptHost scriptHost = ScriptHost.newBuilder()
-                    .registry(JacksonRegistry.newRegistry())
-                    .build();
-            script = scriptHost.buildScript(sub.expressionCriteria)
-                    .withDeclarations(
-                            Decls.newVar("event", Decls.newObjectType(Event.class.getName())))
-                    .withTypes(Event.class)
-                    .build();
-        } catch (ScriptCreateException e) {
-            e.printStackTrace();
+        Script script = scripts.get(sub.expressionCriteria);
+        if(script == null){
+            try {
+                script = buildScript(scriptHost, sub.expressionCriteria);
+                scripts.put(sub.expressionCriteria, script);
+            } catch (ScriptCreateException e) {
+                e.printStackTrace();
+            }
+        }
+        if(script != null){
+            nbrScriptUsers.merge(sub.expressionCriteria, 1, Integer::sum);
         }
 
         SubscriptionWrapper subscriptionWrapper = new SubscriptionWrapper(sub, script);
+        subIndexes.put(sub.id, subs.size());
         subs.add(subscriptionWrapper);
     }
 
-    //TODO: Refactor to reuse objects etc
-    public boolean evaluateExpression(Event event, SubscriptionWrapper subscript) throws ScriptCreateException {
-        Map<String, Object> arguments = new HashMap<>();
-        arguments.put("event", event);
+    /** Removes by moving the last subscription into the removed slot, so no shifting of the list is needed. */
+    @Override
+    public void remove(int subId) {
+        Integer index = subIndexes.remove(subId);
+        if(index == null){
+            return;
+        }
+        String expression = subs.get(index).sub.expressionCriteria;
+        if(nbrScriptUsers.containsKey(expression) && nbrScriptUsers.merge(expression, -1, Integer::sum) == 0){
+            nbrScriptUsers.remove(expression);
+            scripts.remove(expression);
+        }
+        SubscriptionWrapper last = subs.remove(subs.size() - 1);
+        if(index < subs.size()){
+            subs.set(index, last);
+            subIndexes.put(last.sub.id, index);
+        }
+    }
 
+    /** A script host with its own registry, for one engine. */
+    static ScriptHost newScriptHost() {
+        return ScriptHost.newBuilder()
+                .registry(JacksonRegistry.newRegistry())
+                .build();
+    }
+
+    /** Builds the cel script of an expression over the event with the given script host. */
+    static Script buildScript(ScriptHost scriptHost, String expression) throws ScriptCreateException {
+        return scriptHost.buildScript(expression)
+                .withDeclarations(
+                        Decls.newVar("event", Decls.newObjectType(Event.class.getName())))
+                .withTypes(Event.class)
+                .build();
+    }
+
+    /** The arguments that bind the event, created once per event and passed to the script of every subscription. */
+    static Map<String, Object> arguments(Event event) {
+        return Collections.singletonMap("event", event);
+    }
+
+    public boolean evaluateExpression(Map<String, Object> arguments, SubscriptionWrapper subscript) throws ScriptCreateException {
+        if(subscript.script == null){
+            return false; //the expression could not be built
+        }
         Boolean result = null;
         try {
             result = subscript.script.execute(Boolean.class, arguments);
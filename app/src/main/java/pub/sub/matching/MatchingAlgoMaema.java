@@ -1,136 +1,423 @@
 package pub.sub.matching;
 
 import pub.sub.matching.MaemaStructure.Bucket;
-import pub.sub.matching.MaemaStructure.ValIdPair;
+import pub.sub.matching.MaemaStructure.BucketIndex;
 import pub.sub.matching.MaemaStructure.BucketType;
+import pub.sub.matching.MaemaStructure.DirtyBitSet;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /** The event matching algorithm named MAEMA
  * Based on the paper: "Adjusting Matching Algorithm to Adapt to Dynamic Subscriptions in Content-Based Publish/Subscribe Systems" (can be found in google scholar)
  * Link: https://ieeexplore.ieee.org/document/8672310
  * With help from c-code implementation in repo: https://github.com/xizeroplus/matching-algorithm
+ *
+ * In adaptive mode ("maema-adaptive"), the number of buckets and the traversal depth y are not fixed from the config.
+ * The widths and predicate counts of the inserted subscriptions, and the share of double-checked subscriptions that do not match (false positives), are tracked.
+ * Every RETUNE_INTERVAL events, a background thread computes new parameters from them and publishes a re-bucketed index, or the same buckets with a new y.
  */
 public class MatchingAlgoMaema implements MatchingAlgo {
-    List<Subscription> subs;
-    private Bucket[][][] bucketlist;
-    private boolean[] bitSet;
+    Subscription[] subs; //subId -> sub, null if not inserted
+    long[] present; //bitset of the inserted subIds
+    private volatile BucketIndex index; //buckets, bucket step and y, replaced as a whole when re-tuned
+    private final ThreadLocal<DirtyBitSet> bitSets; //one reusable bitset per matching thread, marks the subIds that can not match
+    private final ThreadLocal<DirtyBitSet[]> batchBitSets = ThreadLocal.withInitial(() -> new DirtyBitSet[0]); //reusable bitsets per event of a batch, per matching thread
+    int nbrSubscribers;
+    int nbrTotalAttributes;
     int valDom;
     double width;
     int nbrPredicatesSubs;
-    int bucketStep;
     int maxNbrBuckets;
-    int nbrBuckets; //in c-code: bucks
-    int y = Integer.MAX_VALUE/2;
+
+    //Adaptive mode
+    static final int RETUNE_INTERVAL = 1000; //number of matched events between re-tunes
+    static final int TARGET_BUCKET_SIZE = 16; //wanted average number of values in a bucket when re-bucketing
+    private static final ExecutorService RETUNER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "maema-retune");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final boolean isAdaptive;
+    private final AtomicBoolean isRetuning = new AtomicBoolean();
+    private final AtomicLong nbrMatchedEvents = new AtomicLong();
+    private final LongAdder nbrChecked = new LongAdder(); //double-checked subs since last re-tune
+    private final LongAdder nbrFalsePositives = new LongAdder(); //double-checked subs that did not match since last re-tune
+    private double yScale = 1; //correction of the y of the article from the observed false positives
+    private long nbrSubs;
+    private long nbrPredicates;
+    private long sumWidths; //sum of highValue - lowValue of all predicates
 
 
     public MatchingAlgoMaema(int nbrTotalAttributes, int maxNbrBuckets, int nbrSubscribers, int valDom, double width, int nbrSubPredicates){
-        this.subs = new ArrayList<>();
-        this.bucketlist = new Bucket[nbrTotalAttributes][2][maxNbrBuckets];
-        for(int i = 0; i < nbrTotalAttributes; i++){
-            for (int j = 0; j < 2; j++){
-                for(int k = 0; k < maxNbrBuckets; k++){
-                    this.bucketlist[i][j][k] = new Bucket();
-                }
-            }
-        }
-        this.bitSet = new boolean[nbrSubscribers];
+        this(nbrTotalAttributes, maxNbrBuckets, nbrSubscribers, valDom, width, nbrSubPredicates, false);
+    }
+
+    /** The config's width and number of predicates are used until the adaptive mode has observed the inserted subscriptions. */
+    public MatchingAlgoMaema(int nbrTotalAttributes, int maxNbrBuckets, int nbrSubscribers, int valDom, double width, int nbrSubPredicates, boolean isAdaptive){
+        this.subs = new Subscription[nbrSubscribers];
+        this.present = new long[(nbrSubscribers + 63) >>> 6];
+        this.index = new BucketIndex(nbrTotalAttributes, maxNbrBuckets, valDom, width, nbrSubPredicates);
+        this.isAdaptive = isAdaptive;
+        this.nbrTotalAttributes = nbrTotalAttributes;
+        this.nbrSubscribers = nbrSubscribers;
+        this.bitSets = ThreadLocal.withInitial(DirtyBitSet::new);
         this.valDom = valDom;
         this.width = width;
         this.nbrPredicatesSubs = nbrSubPredicates;
         this.maxNbrBuckets = maxNbrBuckets;
-        this.bucketStep = (this.valDom - 1) / maxNbrBuckets + 1;
-        this.nbrBuckets = (this.valDom - 1) / this.bucketStep + 1;
-        this.y = (int) (nbrBuckets * (1 - Math.pow(((1 - width) / (1 - Math.pow(width, nbrPredicatesSubs))), (1.0 / (nbrPredicatesSubs - 1))) ));
     }
 
     /** Match an event to subscriptions. Using y to know how many neighbouring buckets to traverse
      */
     public List<Subscription> match(Event event, int y) {
-        List<Subscription> matchedSubs = new ArrayList<>();
-        this.bitSet = new boolean[this.bitSet.length];
+        MatchCollector collector = new MatchCollector();
+        match(event.toPrimitive(), y, collector);
+        return collector.matchedSubs;
+    }
+
+    /** Match an event to subscriptions and push the ids of the matches into the sink. Using y to know how many neighbouring buckets to traverse.
+     *  The bitset of the current thread is reused, and afterwards only the words that were marked are cleared.
+     */
+    public void match(PrimitiveEvent event, int y, MatchSink sink) {
+        BucketIndex index = this.index;
+        Bucket[][][] bucketlist = index.bucketlist;
+        int bucketStep = index.bucketStep;
+        int nbrBuckets = index.nbrBuckets;
+        DirtyBitSet bitSet = bitSets.get();
+        bitSet.ensureCapacity(present.length);
 
-        for(int attribute : event.attributeValuePairs.keySet()){
-            int value = event.attributeValuePairs.get(attribute);
+        for(int i = 0; i < event.size(); i++){
+            int attribute = event.attributes[i];
+            int value = event.values[i];
             int bucket = value / bucketStep;
             int upper = Math.min(nbrBuckets, bucket + y);
             int lower = Math.max(0, bucket - y);
+            Bucket[] lowBuckets = bucketlist[attribute][BucketType.lowValue];
+            Bucket[] highBuckets = bucketlist[attribute][BucketType.highValue];
 
-            //Go through lower anchor-bucket
-            for(int k = 0; k < bucketlist[attribute][BucketType.lowValue][bucket].bucket.size(); k++) {
-                if(bucketlist[attribute][BucketType.lowValue][bucket].bucket.get(k).val > value)
-                    bitSet[bucketlist[attribute][BucketType.lowValue][bucket].bucket.get(k).subId] = true;
+            //Go through lower anchor-bucket, the values are sorted so the ones larger than the event value are at the end
+            Bucket anchor = lowBuckets[bucket];
+            for(int k = anchor.firstAbove(value); k < anchor.size; k++) {
+                bitSet.set(anchor.subIds[k]);
             }
             //Go through lower neighbouring bucket to anchor-bucket
             for (int j = bucket + 1; j < upper; j++){
-                for (int k = 0; k < bucketlist[attribute][BucketType.lowValue][j].bucket.size(); k++)
-                    bitSet[bucketlist[attribute][BucketType.lowValue][j].bucket.get(k).subId] = true;
+                markAll(lowBuckets[j], bitSet);
             }
 
-            //Go through upper anchor-bucket
-            for(int k = 0; k < bucketlist[attribute][BucketType.highValue][bucket].bucket.size(); k++) {
-                if(bucketlist[attribute][BucketType.highValue][bucket].bucket.get(k).val < value)
-                    bitSet[bucketlist[attribute][BucketType.highValue][bucket].bucket.get(k).subId] = true;
+            //Go through upper anchor-bucket, the values smaller than the event value are at the start
+            anchor = highBuckets[bucket];
+            int end = anchor.firstAtOrAbove(value);
+            for(int k = 0; k < end; k++) {
+                bitSet.set(anchor.subIds[k]);
             }
             //Go through upper neighbouring bucket to anchor-bucket
             for (int j = bucket - 1; j >= lower; j--){
-                for (int k = 0; k < bucketlist[attribute][BucketType.highValue][j].bucket.size(); k++)
-                    bitSet[bucketlist[attribute][BucketType.highValue][j].bucket.get(k).subId] = true;
+                markAll(highBuckets[j], bitSet);
+            }
+        }
+
+        //DOUBLE CHECK only the inserted subIds that are not marked
+        long[] marked = bitSet.words;
+        int checked = 0;
+        int matched = 0;
+        for(int w = 0; w < present.length; w++){
+            long unmarked = present[w] & ~marked[w];
+            while(unmarked != 0){
+                Subscription sub = subs[(w << 6) + Long.numberOfTrailingZeros(unmarked)];
+                unmarked &= unmarked - 1;
+                checked++;
+                if(isMatched(sub, event)){
+                    matched++;
+                    sink.accept(sub);
+                }
             }
         }
+        bitSet.clear();
 
-        /* DEBUG */
-        //debugNbrFalseInBitset();
+        if(isAdaptive){
+            observeMatch(checked, matched);
+        }
+    }
 
-        //DOUBLE CHECK
-        for(Subscription sub : subs){
-            if(!bitSet[sub.id]){
-                boolean isMatched = true;
-                for(Predicate pred : sub.predicates.values()){
-                    if(!event.attributeValuePairs.containsKey(pred.attribute)) {
-                        isMatched = false;
-                        break;
+    private void markAll(Bucket bucket, DirtyBitSet bitSet) {
+        for (int k = 0; k < bucket.size; k++){
+            bitSet.set(bucket.subIds[k]);
+        }
+    }
+
+    @Override
+    public List<Subscription> match(Event event) {
+        return match(event, index.y);
+    }
+
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        match(event, index.y, sink);
+    }
+
+    /** Match a batch of events. The buckets of an attribute are walked once for all events holding that attribute,
+     *  and each bucket pair is compared with the anchor-bucket events and marked for the events it neighbours.
+     *  The double check then goes through the subscriptions once for the whole batch.
+     */
+    @Override
+    public List<List<Subscription>> matchBatch(Event[] events) {
+        BucketIndex index = this.index;
+        Bucket[][][] bucketlist = index.bucketlist;
+        int bucketStep = index.bucketStep;
+        int nbrBuckets = index.nbrBuckets;
+        int y = index.y;
+        List<List<Subscription>> matchedSubs = new ArrayList<>();
+        DirtyBitSet[] bitSets = bitSetsForBatch(events.length);
+        for(int i = 0; i < events.length; i++){
+            matchedSubs.add(new ArrayList<>());
+        }
+
+        //Group the events of the batch by attribute
+        PrimitiveEvent[] primitiveEvents = new PrimitiveEvent[events.length];
+        HashMap<Integer, List<Integer>> eventsPerAttribute = new HashMap<>(); //attribute -> indexes of events
+        for(int i = 0; i < events.length; i++){
+            primitiveEvents[i] = events[i].toPrimitive();
+            for(int attribute : primitiveEvents[i].attributes){
+                eventsPerAttribute.computeIfAbsent(attribute, a -> new ArrayList<>()).add(i);
+            }
+        }
+
+        int[] anchoredEvents = new int[events.length];
+        int[] neighbouringEvents = new int[events.length];
+        for(int attribute : eventsPerAttribute.keySet()){
+            List<Integer> eventIndexes = eventsPerAttribute.get(attribute);
+            int nbrEvents = eventIndexes.size();
+            int[] values = new int[nbrEvents];
+            int[] anchors = new int[nbrEvents];
+            for(int e = 0; e < nbrEvents; e++){
+                values[e] = primitiveEvents[eventIndexes.get(e)].get(attribute);
+                anchors[e] = values[e] / bucketStep;
+            }
+
+            for(int j = 0; j < nbrBuckets; j++){
+                //Lower buckets: the anchor-bucket is compared, the y buckets above the anchor are marked
+                int nbrAnchored = 0;
+                int nbrNeighbouring = 0;
+                for(int e = 0; e < nbrEvents; e++){
+                    if(anchors[e] == j){
+                        anchoredEvents[nbrAnchored++] = e;
+                    }else if(anchors[e] < j && j < Math.min(nbrBuckets, anchors[e] + y)){
+                        neighbouringEvents[nbrNeighbouring++] = e;
                     }
-                    int eventValue = event.attributeValuePairs.get(pred.attribute);
-                    if((eventValue < pred.lowValue || eventValue > pred.highValue)){
-                        isMatched = false;
-                        break;
+                }
+                if(nbrAnchored + nbrNeighbouring > 0){
+                    Bucket bucket = bucketlist[attribute][BucketType.lowValue][j];
+                    for(int k = 0; k < nbrAnchored; k++){
+                        int e = anchoredEvents[k];
+                        setAll(bitSets[eventIndexes.get(e)], bucket, bucket.firstAbove(values[e]), bucket.size);
+                    }
+                    for(int k = 0; k < nbrNeighbouring; k++){
+                        setAll(bitSets[eventIndexes.get(neighbouringEvents[k])], bucket, 0, bucket.size);
+                    }
+                }
+
+                //Upper buckets: the anchor-bucket is compared, the y buckets below the anchor are marked
+                nbrNeighbouring = 0;
+                for(int e = 0; e < nbrEvents; e++){
+                    if(anchors[e] > j && j >= Math.max(0, anchors[e] - y)){
+                        neighbouringEvents[nbrNeighbouring++] = e;
                     }
                 }
-                if(isMatched){
-                    matchedSubs.add(sub);
+                if(nbrAnchored + nbrNeighbouring > 0){
+                    Bucket bucket = bucketlist[attribute][BucketType.highValue][j];
+                    for(int k = 0; k < nbrAnchored; k++){
+                        int e = anchoredEvents[k];
+                        setAll(bitSets[eventIndexes.get(e)], bucket, 0, bucket.firstAtOrAbove(values[e]));
+                    }
+                    for(int k = 0; k < nbrNeighbouring; k++){
+                        setAll(bitSets[eventIndexes.get(neighbouringEvents[k])], bucket, 0, bucket.size);
+                    }
+                }
+            }
+        }
+
+        //DOUBLE CHECK
+        int[] checked = new int[events.length];
+        for(int w = 0; w < present.length; w++){
+            for(int i = 0; i < events.length; i++){
+                long unmarked = present[w] & ~bitSets[i].words[w];
+                while(unmarked != 0){
+                    Subscription sub = subs[(w << 6) + Long.numberOfTrailingZeros(unmarked)];
+                    unmarked &= unmarked - 1;
+                    checked[i]++;
+                    if(isMatched(sub, primitiveEvents[i])){
+                        matchedSubs.get(i).add(sub);
+                    }
                 }
             }
         }
+        for(int i = 0; i < events.length; i++){
+            bitSets[i].clear();
+            if(isAdaptive){
+                observeMatch(checked[i], matchedSubs.get(i).size());
+            }
+        }
         return matchedSubs;
     }
 
+    /** Returns reusable bitsets of the current thread for each event of a batch, grown to the current number of subIds. */
+    private DirtyBitSet[] bitSetsForBatch(int batchSize) {
+        DirtyBitSet[] pool = batchBitSets.get();
+        if(pool.length < batchSize){
+            pool = Arrays.copyOf(pool, batchSize);
+            for(int i = 0; i < batchSize; i++){
+                if(pool[i] == null){
+                    pool[i] = new DirtyBitSet();
+                }
+            }
+            batchBitSets.set(pool);
+        }
+        for(int i = 0; i < batchSize; i++){
+            pool[i].ensureCapacity(present.length);
+        }
+        return pool;
+    }
+
+    private void setAll(DirtyBitSet bitSet, Bucket bucket, int from, int to) {
+        for(int k = from; k < to; k++){
+            bitSet.set(bucket.subIds[k]);
+        }
+    }
+
+    private boolean isMatched(Subscription sub, PrimitiveEvent event) {
+        for(Predicate pred : sub.predicateArray()){
+            if(!event.contains(pred.attribute)) {
+                return false;
+            }
+            int eventValue = event.get(pred.attribute);
+            if((eventValue < pred.lowValue || eventValue > pred.highValue)){
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
-    public List<Subscription> match(Event event) {
-        return match(event, y);
+    public synchronized void insert(Subscription sub) {
+        Predicate[] predicates = sub.predicateArray();
+        if(sub.id >= subs.length){
+            subs = Arrays.copyOf(subs, Math.max(sub.id + 1, subs.length * 2));
+            present = Arrays.copyOf(present, (subs.length + 63) >>> 6);
+        }
+        subs[sub.id] = sub;
+        present[sub.id >>> 6] |= 1L << sub.id;
+        index.add(sub.id, predicates);
+        observeSubscription(predicates, 1);
     }
 
+    /** Registers the subscriptions and fills the buckets of the attributes in parallel, see BucketIndex.addAll. */
     @Override
-    public void insert(Subscription sub) {
-        this.subs.add(sub);
-        for(Predicate pred : sub.predicates.values()){
-            ValIdPair newPairLow = new ValIdPair(sub.id, pred.lowValue);
-            Bucket bucketLow = bucketlist[pred.attribute][BucketType.lowValue][pred.lowValue / bucketStep];
-            bucketLow.bucket.add(newPairLow);
-            ValIdPair newPairHigh= new ValIdPair(sub.id, pred.highValue);
-            Bucket bucketHigh = bucketlist[pred.attribute][BucketType.highValue][pred.highValue / bucketStep];
-            bucketHigh.bucket.add(newPairHigh);
-        }
-    }
-
-    /** DEBUG HELPER */
-    private void debugNbrFalseInBitset() {
-        int nbrFalse = 0;
-        for(boolean bool : bitSet){
-            if(!bool)
-                nbrFalse += 1;
-        }
-        System.out.println("Nbr false: " + nbrFalse);
+    public synchronized void insertAll(Subscription[] newSubs) {
+        int maxId = -1;
+        for(Subscription sub : newSubs){
+            maxId = Math.max(maxId, sub.id);
+        }
+        if(maxId >= subs.length){
+            subs = Arrays.copyOf(subs, Math.max(maxId + 1, subs.length * 2));
+            present = Arrays.copyOf(present, (subs.length + 63) >>> 6);
+        }
+        int[] subIds = new int[newSubs.length];
+        Predicate[][] predicates = new Predicate[newSubs.length][];
+        for(int i = 0; i < newSubs.length; i++){
+            Subscription sub = newSubs[i];
+            subIds[i] = sub.id;
+            predicates[i] = sub.predicateArray();
+            subs[sub.id] = sub;
+            present[sub.id >>> 6] |= 1L << sub.id;
+            observeSubscription(predicates[i], 1);
+        }
+        index.addAll(subIds, predicates);
+    }
+
+    @Override
+    public synchronized void remove(int subId) {
+        if(subId < 0 || subId >= subs.length || subs[subId] == null){
+            return;
+        }
+        Subscription sub = subs[subId];
+        subs[subId] = null;
+        present[subId >>> 6] &= ~(1L << subId);
+        index.remove(subId, sub.predicateArray());
+        observeSubscription(sub.predicateArray(), -1);
+    }
+
+    private void observeSubscription(Predicate[] predicates, int sign) {
+        nbrSubs += sign;
+        nbrPredicates += sign * predicates.length;
+        for(Predicate pred : predicates){
+            sumWidths += sign * (pred.highValue - pred.lowValue);
+        }
+    }
+
+    /** Counts the double check of an event, and starts a re-tune in the background every RETUNE_INTERVAL events unless one is already running. */
+    private void observeMatch(int checked, int matched) {
+        nbrChecked.add(checked);
+        nbrFalsePositives.add(checked - matched);
+        if(nbrMatchedEvents.incrementAndGet() % RETUNE_INTERVAL == 0 && isRetuning.compareAndSet(false, true)){
+            RETUNER.execute(() -> {
+                try {
+                    retune();
+                } finally {
+                    isRetuning.set(false);
+                }
+            });
+        }
+    }
+
+    /** Computes the number of buckets and y from the observed subscriptions and false positives.
+     *  The buckets are rebuilt when their number has drifted by more than a quarter, otherwise only y is changed. Inserts and removals wait meanwhile.
+     */
+    synchronized void retune() {
+        if(nbrSubs == 0 || nbrPredicates == 0){
+            return;
+        }
+        //Marking more neighbouring buckets costs little compared to double checking many false positives, and the other way around
+        long checked = nbrChecked.sumThenReset();
+        long falsePositives = nbrFalsePositives.sumThenReset();
+        double falsePositiveRate = checked == 0 ? 0 : (double) falsePositives / checked;
+        if(falsePositiveRate > 0.5){
+            yScale = Math.min(yScale * 1.25, 4);
+        }else if(falsePositiveRate < 0.1){
+            yScale = Math.max(yScale * 0.8, 0.25);
+        }
+
+        double observedWidth = (double) sumWidths / nbrPredicates / valDom;
+        double observedNbrPredicates = (double) nbrPredicates / nbrSubs;
+        int nbrBuckets = (int) Math.max(1, Math.min(Math.min(maxNbrBuckets, valDom), nbrPredicates / nbrTotalAttributes / TARGET_BUCKET_SIZE));
+        BucketIndex current = index;
+        if(Math.abs(nbrBuckets - current.nbrBuckets) * 4 > current.nbrBuckets){
+            rebuild(nbrBuckets, observedWidth, observedNbrPredicates);
+            current = index;
+        }
+        int y = BucketIndex.traversalDepth(current.nbrBuckets, observedWidth, observedNbrPredicates);
+        y = (int) Math.max(0, Math.min(current.nbrBuckets, y * yScale));
+        if(y != current.y){
+            index = new BucketIndex(current, y);
+        }
+    }
+
+    /** Builds a new index with the given number of buckets from the inserted subscriptions, and publishes it. */
+    synchronized void rebuild(int nbrBuckets, double width, double nbrSubPredicates) {
+        BucketIndex rebuilt = new BucketIndex(nbrTotalAttributes, nbrBuckets, valDom, width, nbrSubPredicates);
+        for(Subscription sub : subs){
+            if(sub != null){
+                rebuilt.add(sub.id, sub.predicateArray());
+            }
+        }
+        index = rebuilt;
     }
 }
@@ -0,0 +1,168 @@
+package pub.sub.matching;
+
+import pub.sub.matching.MaemaStructure.Bucket;
+import pub.sub.matching.MaemaStructure.BucketIndex;
+import pub.sub.matching.MaemaStructure.BucketType;
+import pub.sub.matching.MaemaStructure.DirtyBitSet;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** The event matching algorithm named REIN (REctangle INdexing)
+ * Based on the paper: "REIN: A fast event matching approach for content-based publish/subscribe systems" (INFOCOM 2014, can be found in google scholar)
+ * With help from c-code implementation in repo: https://github.com/xizeroplus/matching-algorithm
+ *
+ * REIN does a negative search: it marks every subscription that can not match the event, and the unmarked ones are the matches.
+ * The low and high values of the predicates are stored in the same buckets as MAEMA, but all buckets on the far side of the event value are marked,
+ * and every predicate on an attribute the event does not have is marked as well. No double check is needed, so the cost depends on the number
+ * of predicates that do not match rather than on the number of subscriptions, which makes REIN fast when many subscriptions match.
+ */
+public class MatchingAlgoRein implements MatchingAlgo {
+    Subscription[] subs; //subId -> sub, null if not inserted
+    long[] present; //bitset of the inserted subIds
+    private final BucketIndex index;
+    private final ThreadLocal<DirtyBitSet> bitSets; //one reusable bitset per matching thread, marks the subIds that can not match
+    private final int[] nbrAttributePredicates; //attribute -> number of inserted predicates, attributes without predicates are skipped
+
+    public MatchingAlgoRein(int nbrTotalAttributes, int maxNbrBuckets, int nbrSubscribers, int valDom){
+        this.subs = new Subscription[nbrSubscribers];
+        this.present = new long[(nbrSubscribers + 63) >>> 6];
+        this.index = new BucketIndex(nbrTotalAttributes, maxNbrBuckets, valDom, 0, 2); //gives y = 0, y is not used by REIN
+        this.bitSets = ThreadLocal.withInitial(DirtyBitSet::new);
+        this.nbrAttributePredicates = new int[nbrTotalAttributes];
+    }
+
+    @Override
+    public List<Subscription> match(Event event) {
+        MatchCollector collector = new MatchCollector();
+        match(event.toPrimitive(), collector);
+        return collector.matchedSubs;
+    }
+
+    /** Marks the subscriptions with a predicate that the event does not fulfil, and pushes the unmarked inserted subscriptions into the sink.
+     *  The attributes of the event are sorted, so the attributes with predicates are walked together with them.
+     */
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        Bucket[][][] bucketlist = index.bucketlist;
+        int bucketStep = index.bucketStep;
+        int nbrBuckets = index.nbrBuckets;
+        DirtyBitSet bitSet = bitSets.get();
+        bitSet.ensureCapacity(present.length);
+
+        int i = 0;
+        for(int attribute = 0; attribute < nbrAttributePredicates.length; attribute++){
+            while(i < event.size() && event.attributes[i] < attribute){
+                i++;
+            }
+            if(nbrAttributePredicates[attribute] == 0){
+                continue;
+            }
+            Bucket[] lowBuckets = bucketlist[attribute][BucketType.lowValue];
+            Bucket[] highBuckets = bucketlist[attribute][BucketType.highValue];
+            if(i == event.size() || event.attributes[i] != attribute){
+                //The event does not have the attribute, so no predicate on it can match
+                for(int j = 0; j <= nbrBuckets; j++){
+                    markAll(lowBuckets[j], bitSet);
+                }
+                continue;
+            }
+            int value = event.values[i];
+            int bucket = value < 0 ? -1 : Math.min(value / bucketStep, nbrBuckets);
+
+            //Low values larger than the event value: the end of the anchor-bucket and all buckets above it
+            if(bucket >= 0){
+                Bucket anchor = lowBuckets[bucket];
+                for(int k = anchor.firstAbove(value); k < anchor.size; k++){
+                    bitSet.set(anchor.subIds[k]);
+                }
+            }
+            for(int j = bucket + 1; j <= nbrBuckets; j++){
+                markAll(lowBuckets[j], bitSet);
+            }
+
+            //High values smaller than the event value: the start of the anchor-bucket and all buckets below it
+            if(bucket >= 0){
+                Bucket anchor = highBuckets[bucket];
+                int end = anchor.firstAtOrAbove(value);
+                for(int k = 0; k < end; k++){
+                    bitSet.set(anchor.subIds[k]);
+                }
+            }
+            for(int j = bucket - 1; j >= 0; j--){
+                markAll(highBuckets[j], bitSet);
+            }
+        }
+
+        long[] marked = bitSet.words;
+        for(int w = 0; w < present.length; w++){
+            long unmarked = present[w] & ~marked[w];
+            while(unmarked != 0){
+                sink.accept(subs[(w << 6) + Long.numberOfTrailingZeros(unmarked)]);
+                unmarked &= unmarked - 1;
+            }
+        }
+        bitSet.clear();
+    }
+
+    private void markAll(Bucket bucket, DirtyBitSet bitSet) {
+        for (int k = 0; k < bucket.size; k++){
+            bitSet.set(bucket.subIds[k]);
+        }
+    }
+
+    @Override
+    public void insert(Subscription sub) {
+        Predicate[] predicates = sub.predicateArray();
+        if(sub.id >= subs.length){
+            subs = Arrays.copyOf(subs, Math.max(sub.id + 1, subs.length * 2));
+            present = Arrays.copyOf(present, (subs.length + 63) >>> 6);
+        }
+        subs[sub.id] = sub;
+        present[sub.id >>> 6] |= 1L << sub.id;
+        index.add(sub.id, predicates);
+        countPredicates(predicates, 1);
+    }
+
+    /** Registers the subscriptions and fills the buckets of the attributes in parallel, see BucketIndex.addAll. */
+    @Override
+    public void insertAll(Subscription[] newSubs) {
+        int maxId = -1;
+        for(Subscription sub : newSubs){
+            maxId = Math.max(maxId, sub.id);
+        }
+        if(maxId >= subs.length){
+            subs = Arrays.copyOf(subs, Math.max(maxId + 1, subs.length * 2));
+            present = Arrays.copyOf(present, (subs.length + 63) >>> 6);
+        }
+        int[] subIds = new int[newSubs.length];
+        Predicate[][] predicates = new Predicate[newSubs.length][];
+        for(int i = 0; i < newSubs.length; i++){
+            Subscription sub = newSubs[i];
+            subIds[i] = sub.id;
+            predicates[i] = sub.predicateArray();
+            subs[sub.id] = sub;
+            present[sub.id >>> 6] |= 1L << sub.id;
+            countPredicates(predicates[i], 1);
+        }
+        index.addAll(subIds, predicates);
+    }
+
+    @Override
+    public void remove(int subId) {
+        if(subId < 0 || subId >= subs.length || subs[subId] == null){
+            return;
+        }
+        Subscription sub = subs[subId];
+        subs[subId] = null;
+        present[subId >>> 6] &= ~(1L << subId);
+        index.remove(subId, sub.predicateArray());
+        countPredicates(sub.predicateArray(), -1);
+    }
+
+    private void countPredicates(Predicate[] predicates, int sign) {
+        for(Predicate pred : predicates){
+            nbrAttributePredicates[pred.attribute] += sign;
+        }
+    }
+}
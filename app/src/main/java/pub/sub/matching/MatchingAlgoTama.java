@@ -0,0 +1,146 @@
+package pub.sub.matching;
+
+import pub.sub.matching.TamaStructure.ValueTable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/** The event matching algorithm named TAMA
+ *  Based on the paper: "Towards approximate event processing in a large-scale content-based network" (ICDCS 2011, can be found in google scholar)
+ *
+ *  Each attribute has a hierarchical value table, see ValueTable. An event walks one path per attribute from the first level down to the cell of its value,
+ *  and counts the predicates stored in the cells on the way. A subscription matches when all of its predicates are counted.
+ *  In approximate mode ("tama-approx"), predicates that only partly cover a cell of the last level are counted without checking them,
+ *  which saves the check at the cost of false positives. Fewer levels make the tables smaller and the walks shorter, but the cells wider and the false positives more.
+ *  In exact mode ("tama"), those predicates are checked against the event value, so there are no false positives.
+ *
+ *  Subscriptions get dense internal ids, reused after removal, as in AVDDM.
+ */
+public class MatchingAlgoTama implements MatchingAlgo {
+    private HashMap<Integer, Integer> denseIds; //subId -> dense id
+    private Subscription[] subs; //dense id -> sub
+    private int[] predicateCounts; //dense id -> number of predicates of the sub
+    private int nbrDenseIds; //dense ids that have been handed out
+    private int[] freeIds; //removed dense ids to reuse
+    private int nbrFreeIds;
+    private final ValueTable[] tables; //attribute -> value table, null while the attribute has no predicates
+    private final ThreadLocal<Counters> counters; //reusable match counters per matching thread
+    private final boolean isExact;
+    int valDom;
+    int nbrLevels;
+
+    /**
+     * @param nbrTotalAttributes
+     * @param expectedNbrSubscribers
+     * @param valDom
+     * @param nbrLevels the number of levels below the first, capped at the levels needed for cells of width one
+     * @param isExact
+     */
+    public MatchingAlgoTama(int nbrTotalAttributes, int expectedNbrSubscribers, int valDom, int nbrLevels, boolean isExact){
+        this.denseIds = new HashMap<>();
+        this.subs = new Subscription[expectedNbrSubscribers];
+        this.predicateCounts = new int[expectedNbrSubscribers];
+        this.freeIds = new int[16];
+        this.tables = new ValueTable[nbrTotalAttributes];
+        this.counters = ThreadLocal.withInitial(Counters::new);
+        this.isExact = isExact;
+        this.valDom = valDom;
+        this.nbrLevels = Math.max(0, Math.min(nbrLevels, ValueTable.maxNbrLevels(valDom)));
+    }
+
+    @Override
+    public List<Subscription> match(Event event) {
+        MatchCollector collector = new MatchCollector();
+        match(event, collector);
+        return collector.matchedSubs;
+    }
+
+    /** Counts the predicates on the path of each event value in the reusable counters of the current thread.
+     *  Only the counters of touched subscriptions are checked and reset afterwards. */
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        Counters scratch = counters.get();
+        scratch.ensureCapacity(predicateCounts.length);
+        int[] subcounter = scratch.subcounter; //dense id -> int count
+        int[] touched = scratch.touched;
+        int nbrTouched = 0;
+        for(int a = 0; a < event.size(); a++){
+            int attribute = event.attributes[a];
+            if(attribute >= tables.length || tables[attribute] == null){
+                continue;
+            }
+            nbrTouched = tables[attribute].count(event.values[a], isExact, subcounter, touched, nbrTouched);
+        }
+
+        //check
+        for(int i = 0; i < nbrTouched; i++){
+            int id = touched[i];
+            if(subcounter[id] == predicateCounts[id]){
+                sink.accept(subs[id]);
+            }
+            subcounter[id] = 0;
+        }
+    }
+
+    @Override
+    public void insert(Subscription sub) {
+        int id = register(sub);
+        for(Predicate pred : sub.predicateArray()){
+            if(tables[pred.attribute] == null){
+                tables[pred.attribute] = new ValueTable(valDom, nbrLevels);
+            }
+            tables[pred.attribute].add(id, pred.lowValue, pred.highValue);
+        }
+    }
+
+    /** Gives the sub a dense id, preferably one freed by a removal, and stores it under that id. */
+    private int register(Subscription sub) {
+        int id;
+        if(nbrFreeIds > 0){
+            id = freeIds[--nbrFreeIds];
+        }else{
+            id = nbrDenseIds++;
+            if(id >= subs.length){
+                subs = Arrays.copyOf(subs, Math.max(id + 1, subs.length * 2));
+                predicateCounts = Arrays.copyOf(predicateCounts, subs.length);
+            }
+        }
+        denseIds.put(sub.id, id);
+        subs[id] = sub;
+        predicateCounts[id] = sub.predicateArray().length;
+        return id;
+    }
+
+    /** Removes the subscription's predicates from the cells they were stored in. The dense id is freed for reuse. */
+    @Override
+    public void remove(int subId) {
+        Integer id = denseIds.remove(subId);
+        if(id == null){
+            return;
+        }
+        Subscription sub = subs[id];
+        subs[id] = null;
+        predicateCounts[id] = 0;
+        for(Predicate pred : sub.predicateArray()){
+            tables[pred.attribute].remove(id, pred.lowValue, pred.highValue);
+        }
+        if(nbrFreeIds == freeIds.length){
+            freeIds = Arrays.copyOf(freeIds, nbrFreeIds * 2);
+        }
+        freeIds[nbrFreeIds++] = id;
+    }
+
+    /** The scratch state of one matching thread. Counters are indexed by dense id and only grow when more subscriptions are inserted. */
+    private static class Counters {
+        int[] subcounter = new int[0];
+        int[] touched = new int[0];
+
+        void ensureCapacity(int capacity) {
+            if(subcounter.length < capacity){
+                subcounter = new int[capacity];
+                touched = new int[capacity];
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package pub.sub.matching;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/** A compact, array-backed form of an Event that the matching algorithms match against directly.
+ *  The attributes are kept sorted in an int array with their values in a parallel array.
+ *  When all attribute ids are small, a dense array indexed by attribute and a presence bitmap answer lookups without hashing or boxing.
+ *  Otherwise lookups binary search the sorted attributes. */
+public class PrimitiveEvent {
+    /** Events whose largest attribute id is below this limit get the dense lookup arrays */
+    static final int MAX_DENSE_ATTRIBUTE = 1024;
+
+    public final int[] attributes; //sorted
+    public final int[] values; //values[i] is the value of attributes[i]
+    private final int[] denseValues; //attribute -> value, null if the event is sparse
+    private final long[] presence; //bitmap of the attributes in denseValues
+
+    public PrimitiveEvent(Map<Integer, Integer> attributeValuePairs) {
+        int size = attributeValuePairs.size();
+        this.attributes = new int[size];
+        this.values = new int[size];
+        int i = 0;
+        for(int attribute : attributeValuePairs.keySet()){
+            attributes[i++] = attribute;
+        }
+        Arrays.sort(attributes);
+        for(i = 0; i < size; i++){
+            values[i] = attributeValuePairs.get(attributes[i]);
+        }
+
+        if(size > 0 && attributes[0] >= 0 && attributes[size - 1] < MAX_DENSE_ATTRIBUTE){
+            int maxAttribute = attributes[size - 1];
+            this.denseValues = new int[maxAttribute + 1];
+            this.presence = new long[(maxAttribute >> 6) + 1];
+            for(i = 0; i < size; i++){
+                denseValues[attributes[i]] = values[i];
+                presence[attributes[i] >> 6] |= 1L << attributes[i];
+            }
+        }else{
+            this.denseValues = null;
+            this.presence = null;
+        }
+    }
+
+    /** The number of attributes in the event */
+    public int size() {
+        return attributes.length;
+    }
+
+    public boolean contains(int attribute) {
+        if(presence != null){
+            return attribute >= 0 && attribute < denseValues.length && (presence[attribute >> 6] & (1L << attribute)) != 0;
+        }
+        return Arrays.binarySearch(attributes, attribute) >= 0;
+    }
+
+    /** Returns the value of the attribute. Only defined for attributes the event contains. */
+    public int get(int attribute) {
+        if(denseValues != null){
+            return denseValues[attribute];
+        }
+        return values[Arrays.binarySearch(attributes, attribute)];
+    }
+
+    /** Converts back to an Event, for algorithms that evaluate expressions over Event.attributeValuePairs. */
+    public Event toEvent() {
+        Event event = new Event();
+        for(int i = 0; i < attributes.length; i++){
+            event.add(attributes[i], values[i]);
+        }
+        return event;
+    }
+}
@@ -11,13 +11,21 @@ public class Result {
     Long[] matchingTimes;
     List<List<Subscription>> matchedSubs;
     Float[] matchabilities;
+    Float[] falsePositiveRates; //per event, the share of the matched subs that do not match the event. Only approximate algos have any
+    Long[] removalTimes;
 
-    public Result(Long[] precomputationTimes, Long[] memoryConsumption, Long[] insertionTimes, Long[] matchingTimes, List<List<Subscription>> matchedSubs, Float[] matchabilities) {
+    public Result(Long[] precomputationTimes, Long[] memoryConsumption, Long[] insertionTimes, Long[] matchingTimes, List<List<Subscription>> matchedSubs, Float[] matchabilities, Long[] removalTimes) {
+        this(precomputationTimes, memoryConsumption, insertionTimes, matchingTimes, matchedSubs, matchabilities, null, removalTimes);
+    }
+
+    public Result(Long[] precomputationTimes, Long[] memoryConsumption, Long[] insertionTimes, Long[] matchingTimes, List<List<Subscription>> matchedSubs, Float[] matchabilities, Float[] falsePositiveRates, Long[] removalTimes) {
         this.insertionTimes = insertionTimes;
         this.matchingTimes = matchingTimes;
         this.matchedSubs = matchedSubs;
         this.precomputationTimes = precomputationTimes;
         this.memoryConsumption = memoryConsumption;
         this.matchabilities = matchabilities;
+        this.falsePositiveRates = falsePositiveRates;
+        this.removalTimes = removalTimes;
     }
 }
@@ -0,0 +1,197 @@
+package pub.sub.matching;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/** Spreads the subscriptions over several inner algorithms (shards) of any type, by hash of the subscription id.
+ *  An event is matched on all shards in parallel, one shard on the calling thread and the others on a shared worker pool, and the matches are merged on the calling thread.
+ *  Each shard is only ever matched by one thread per event, so the inner algorithms need no other synchronization than their per-thread scratch state.
+ */
+public class ShardedMatchingAlgo implements MatchingAlgo {
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors()); //shared by all sharded algos, the worker threads are daemons
+
+    private final MatchingAlgo[] shards;
+    private final ThreadLocal<ShardTask[]> shardTasks; //reusable match tasks of the calling thread, one per shard, each with its own match buffer
+
+    public ShardedMatchingAlgo(int nbrShards, Supplier<MatchingAlgo> createShard) {
+        this.shards = new MatchingAlgo[Math.max(1, nbrShards)];
+        for(int s = 0; s < shards.length; s++){
+            shards[s] = createShard.get();
+        }
+        this.shardTasks = ThreadLocal.withInitial(() -> {
+            ShardTask[] tasks = new ShardTask[shards.length];
+            for(int s = 0; s < tasks.length; s++){
+                tasks[s] = new ShardTask(shards[s]);
+            }
+            return tasks;
+        });
+    }
+
+    @Override
+    public List<Subscription> match(Event event) {
+        List<List<Subscription>> shardMatches = onAllShards(s -> shards[s].match(event));
+        List<Subscription> matchedSubs = new ArrayList<>();
+        for(List<Subscription> matches : shardMatches){
+            matchedSubs.addAll(matches);
+        }
+        return matchedSubs;
+    }
+
+    /** Every shard matches into its own buffer, which is then replayed into the sink on the calling thread. The sink therefore needs not be thread safe.
+     *  The tasks and buffers of the calling thread are re-armed for every event, so nothing is allocated once the buffers have grown to the number of matches.
+     *  Shard 0 runs on the calling thread while the others run in the pool.
+     */
+    @Override
+    public void match(PrimitiveEvent event, MatchSink sink) {
+        ShardTask[] tasks = shardTasks.get();
+        for(int s = 1; s < tasks.length; s++){
+            tasks[s].event = event;
+            tasks[s].reinitialize();
+            POOL.execute(tasks[s]);
+        }
+        tasks[0].event = event;
+        try {
+            tasks[0].compute();
+        } finally {
+            //wait for every shard before the tasks can be re-armed, even if one of them failed
+            for(int s = 1; s < tasks.length; s++){
+                tasks[s].quietlyJoin();
+            }
+        }
+        for(int s = 1; s < tasks.length; s++){
+            tasks[s].join(); //rethrows the failure of a shard
+        }
+        for(ShardTask task : tasks){
+            task.event = null;
+            task.buffer.replay(sink);
+        }
+    }
+
+    @Override
+    public List<List<Subscription>> matchBatch(Event[] events) {
+        List<List<List<Subscription>>> shardMatches = onAllShards(s -> shards[s].matchBatch(events));
+        List<List<Subscription>> matchedSubs = new ArrayList<>();
+        for(int i = 0; i < events.length; i++){
+            List<Subscription> eventMatches = new ArrayList<>();
+            for(List<List<Subscription>> matches : shardMatches){
+                eventMatches.addAll(matches.get(i));
+            }
+            matchedSubs.add(eventMatches);
+        }
+        return matchedSubs;
+    }
+
+    @Override
+    public void insert(Subscription sub) {
+        shards[shardIndex(sub.id)].insert(sub);
+    }
+
+    /** Splits the subscriptions by shard and lets every shard insert its part at the same time. */
+    @Override
+    public void insertAll(Subscription[] subs) {
+        List<List<Subscription>> shardSubs = new ArrayList<>(shards.length);
+        for(int s = 0; s < shards.length; s++){
+            shardSubs.add(new ArrayList<>());
+        }
+        for(Subscription sub : subs){
+            shardSubs.get(shardIndex(sub.id)).add(sub);
+        }
+        onAllShards(s -> {
+            shards[s].insertAll(shardSubs.get(s).toArray(new Subscription[0]));
+            return null;
+        });
+    }
+
+    @Override
+    public void remove(int subId) {
+        shards[shardIndex(subId)].remove(subId);
+    }
+
+    private int shardIndex(int subId) {
+        //spread the bits before taking the modulo, in case ids share a stride with the number of shards
+        int hash = subId * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    /** Runs the work for every shard and returns the results in shard order. Shard 0 runs on the calling thread while the others run in the pool.
+     *  Used by the APIs that return lists and by insertAll, the sink path uses the reusable ShardTasks instead. */
+    private <T> List<T> onAllShards(IntFunction<T> work) {
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(shards.length - 1);
+        for(int s = 1; s < shards.length; s++){
+            int shard = s;
+            tasks.add(POOL.submit(() -> work.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(shards.length);
+        results.add(work.apply(0));
+        for(ForkJoinTask<T> task : tasks){
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    /** Matches the current event of the calling thread on one shard into the buffer of the shard. Re-armed with reinitialize for every event. */
+    private static class ShardTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final MatchingAlgo shard;
+        private final ShardBuffer buffer = new ShardBuffer();
+        private PrimitiveEvent event;
+
+        ShardTask(MatchingAlgo shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        protected void compute() {
+            buffer.clear();
+            shard.match(event, buffer);
+        }
+    }
+
+    /** The matches of one shard for one event. The subscription is kept when the shard gave it, so that it can be replayed the same way. */
+    private static class ShardBuffer implements MatchSink {
+        int[] subIds = new int[16];
+        Subscription[] subs = new Subscription[16];
+        int size;
+
+        void clear() {
+            Arrays.fill(subs, 0, size, null);
+            size = 0;
+        }
+
+        @Override
+        public void accept(int subId) {
+            add(subId, null);
+        }
+
+        @Override
+        public void accept(Subscription sub) {
+            add(sub.id, sub);
+        }
+
+        private void add(int subId, Subscription sub) {
+            if(size == subIds.length){
+                subIds = Arrays.copyOf(subIds, size * 2);
+                subs = Arrays.copyOf(subs, size * 2);
+            }
+            subIds[size] = subId;
+            subs[size] = sub;
+            size++;
+        }
+
+        void replay(MatchSink sink) {
+            for(int i = 0; i < size; i++){
+                if(subs[i] != null){
+                    sink.accept(subs[i]);
+                }else{
+                    sink.accept(subIds[i]);
+                }
+            }
+        }
+    }
+}
@@ -9,6 +9,7 @@ public class Subscription {
     Integer id;
     public HashMap<Integer, Predicate> predicates; //The key is the pred attribute
     String expressionCriteria;
+    private Predicate[] predicateArray;
 
     public Subscription(HashMap<Integer, Predicate> predicates, Integer subId){
         this.predicates = predicates;
@@ -24,4 +25,13 @@ public class Subscription {
         this.id = (int) Math.round(Math.random()*10000);
         this.predicates = predicates;
     }
+
+    /** The predicates as an array, so that matching loops can go through them without creating an iterator.
+     *  It is created on first use, which the algorithms do at insertion. */
+    public Predicate[] predicateArray(){
+        if(predicateArray == null){
+            predicateArray = predicates.values().toArray(new Predicate[0]);
+        }
+        return predicateArray;
+    }
 }
@@ -0,0 +1,164 @@
+package pub.sub.matching.TamaStructure;
+
+import java.util.Arrays;
+
+/** The hierarchical value table of TAMA for one attribute.
+ *  Level 0 is one cell over the whole value domain, and every level splits each cell of the level above in two, down to the last level.
+ *  The cells are stored as a complete binary tree in an array: cell c has the children 2c+1 and 2c+2.
+ *  A predicate is stored in the fewest cells that together cover its range. Cells of the last level that the range only partly covers keep
+ *  the predicate's low and high value too, so the exact mode can check them while the approximate mode counts them as satisfied.
+ *  Values must be within the value domain, as for MAEMA.
+ */
+public class ValueTable {
+    private final int valDom;
+    private final int nbrLevels;
+    private final int firstLeaf; //index of the first cell of the last level
+    private final int[][] ids; //cell -> dense ids of the predicates that cover the cell, null while empty
+    private final int[] sizes;
+    private final int[][] partialIds; //leaf -> dense ids of the predicates that only partly cover the leaf
+    private final int[][] partialLowValues;
+    private final int[][] partialHighValues;
+    private final int[] partialSizes;
+
+    public ValueTable(int valDom, int nbrLevels) {
+        this.valDom = valDom;
+        this.nbrLevels = nbrLevels;
+        this.firstLeaf = (1 << nbrLevels) - 1;
+        this.ids = new int[2 * firstLeaf + 1][];
+        this.sizes = new int[ids.length];
+        this.partialIds = new int[firstLeaf + 1][];
+        this.partialLowValues = new int[firstLeaf + 1][];
+        this.partialHighValues = new int[firstLeaf + 1][];
+        this.partialSizes = new int[firstLeaf + 1];
+    }
+
+    /** The number of levels below the first that are needed for the last level to have cells of width one. More levels would only add empty cells. */
+    public static int maxNbrLevels(int valDom) {
+        return valDom <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(valDom - 1);
+    }
+
+    public void add(int id, int lowValue, int highValue) {
+        add(0, 0, 0, valDom - 1, id, Math.max(lowValue, 0), Math.min(highValue, valDom - 1));
+    }
+
+    private void add(int cell, int level, int cellLow, int cellHigh, int id, int lowValue, int highValue) {
+        if(lowValue > cellHigh || highValue < cellLow){
+            return;
+        }
+        if(lowValue <= cellLow && cellHigh <= highValue){
+            if(ids[cell] == null){
+                ids[cell] = new int[4];
+            }else if(sizes[cell] == ids[cell].length){
+                ids[cell] = Arrays.copyOf(ids[cell], sizes[cell] * 2);
+            }
+            ids[cell][sizes[cell]++] = id;
+            return;
+        }
+        if(level == nbrLevels){
+            int leaf = cell - firstLeaf;
+            if(partialIds[leaf] == null){
+                partialIds[leaf] = new int[4];
+                partialLowValues[leaf] = new int[4];
+                partialHighValues[leaf] = new int[4];
+            }else if(partialSizes[leaf] == partialIds[leaf].length){
+                partialIds[leaf] = Arrays.copyOf(partialIds[leaf], partialSizes[leaf] * 2);
+                partialLowValues[leaf] = Arrays.copyOf(partialLowValues[leaf], partialSizes[leaf] * 2);
+                partialHighValues[leaf] = Arrays.copyOf(partialHighValues[leaf], partialSizes[leaf] * 2);
+            }
+            int i = partialSizes[leaf]++;
+            partialIds[leaf][i] = id;
+            partialLowValues[leaf][i] = lowValue;
+            partialHighValues[leaf][i] = highValue;
+            return;
+        }
+        int mid = (cellLow + cellHigh) >>> 1;
+        add(2 * cell + 1, level + 1, cellLow, mid, id, lowValue, highValue);
+        add(2 * cell + 2, level + 1, mid + 1, cellHigh, id, lowValue, highValue);
+    }
+
+    /** Removes the predicate of the given dense id from the same cells it was added to. The last id of a cell is moved into its place. */
+    public void remove(int id, int lowValue, int highValue) {
+        remove(0, 0, 0, valDom - 1, id, Math.max(lowValue, 0), Math.min(highValue, valDom - 1));
+    }
+
+    private void remove(int cell, int level, int cellLow, int cellHigh, int id, int lowValue, int highValue) {
+        if(lowValue > cellHigh || highValue < cellLow){
+            return;
+        }
+        if(lowValue <= cellLow && cellHigh <= highValue){
+            int[] cellIds = ids[cell];
+            for(int i = 0; i < sizes[cell]; i++){
+                if(cellIds[i] == id){
+                    cellIds[i] = cellIds[--sizes[cell]];
+                    return;
+                }
+            }
+            return;
+        }
+        if(level == nbrLevels){
+            int leaf = cell - firstLeaf;
+            for(int i = 0; i < partialSizes[leaf]; i++){
+                if(partialIds[leaf][i] == id){
+                    int last = --partialSizes[leaf];
+                    partialIds[leaf][i] = partialIds[leaf][last];
+                    partialLowValues[leaf][i] = partialLowValues[leaf][last];
+                    partialHighValues[leaf][i] = partialHighValues[leaf][last];
+                    return;
+                }
+            }
+            return;
+        }
+        int mid = (cellLow + cellHigh) >>> 1;
+        remove(2 * cell + 1, level + 1, cellLow, mid, id, lowValue, highValue);
+        remove(2 * cell + 2, level + 1, mid + 1, cellHigh, id, lowValue, highValue);
+    }
+
+    /**
+     * Counts every predicate on the path from the first level down to the cell of the value. The cells of one predicate do not overlap,
+     * so a predicate is counted at most once. In exact mode the partly covered predicates of the last cell are checked against the value.
+     * @param value
+     * @param isExact
+     * @param subcounter dense id -> number of counted predicates
+     * @param touched the dense ids whose counter went from zero to one
+     * @param nbrTouched
+     * @return the new number of touched ids
+     */
+    public int count(int value, boolean isExact, int[] subcounter, int[] touched, int nbrTouched) {
+        if(value < 0 || value >= valDom){
+            return nbrTouched;
+        }
+        int cell = 0;
+        int cellLow = 0;
+        int cellHigh = valDom - 1;
+        for(int level = 0; ; level++){
+            int[] cellIds = ids[cell];
+            for(int i = 0; i < sizes[cell]; i++){
+                if(subcounter[cellIds[i]]++ == 0){
+                    touched[nbrTouched++] = cellIds[i];
+                }
+            }
+            if(level == nbrLevels){
+                int leaf = cell - firstLeaf;
+                int[] leafIds = partialIds[leaf];
+                int[] lowValues = partialLowValues[leaf];
+                int[] highValues = partialHighValues[leaf];
+                for(int i = 0; i < partialSizes[leaf]; i++){
+                    if(!isExact || (value >= lowValues[i] && value <= highValues[i])){
+                        if(subcounter[leafIds[i]]++ == 0){
+                            touched[nbrTouched++] = leafIds[i];
+                        }
+                    }
+                }
+                return nbrTouched;
+            }
+            int mid = (cellLow + cellHigh) >>> 1;
+            if(value <= mid){
+                cell = 2 * cell + 1;
+                cellHigh = mid;
+            }else{
+                cell = 2 * cell + 2;
+                cellLow = mid + 1;
+            }
+        }
+    }
+}
@@ -33,6 +33,25 @@ public class TestSuite {
          */
     }
 
+    /** Compares BE-Tree with GEM-Tree and MAEMA on large events. The subscriptions keep a few predicates while the number of event attributes grows,
+     *  which is where GEM-Tree falls off. **/
+    static void runLargeEventsComparison(EvaluationFunction evaluationFunction) {
+        for(String algo : List.of("betree", "gem", "maema")){
+            System.out.println("Running "+algo + "...");
+            runTime2EventAttributes(evaluationFunction, algo, 1, 101, 10);
+            System.out.println("time to event att done");
+        }
+    }
+
+    /** Compares the exact and the approximate mode of TAMA. Fewer levels make the approximate mode faster, at the cost of more false positives. **/
+    static void runApproximationComparison(EvaluationFunction evaluationFunction) {
+        for(String algo : List.of("tama", "tama-approx")){
+            System.out.println("Running "+algo + "...");
+            runTime2TamaLevels(evaluationFunction, algo, 2, 14, 2);
+            System.out.println("time to tama levels done");
+        }
+    }
+
     /** Evaluates an algorithm when varying the width. A larger width emulates a less strict predicate.
      *  The number of width is varied between startValue and endValue with a given increment between each measuring point. **/
     private static void runTime2Width(EvaluationFunction evaluationFunction, String algo, int startValue, int endValue, int increment) {
@@ -61,6 +80,20 @@ public class TestSuite {
         }
     }
 
+    /** Evaluates an algorithm when varying the number of levels in the value tables of TAMA. More levels give narrower cells and fewer false positives in "tama-approx".
+     *  The number of levels is varied between startValue and endValue with a given increment between each measuring point. **/
+    private static void runTime2TamaLevels(EvaluationFunction evaluationFunction, String algo, int startValue, int endValue, int increment) {
+        Config config = Config.configDefaultTest();
+        for(int i = startValue; i<=endValue; i += increment){
+            config.setTAMA_NBR_LEVELS(i);
+            try {
+                evaluationFunction.function(config, algo, "time_tama_levels");
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     /** Evaluates an algorithm when varying the Subscription Predicates. More predicates means "longer" subscription criteria, ie pred1 && pred2 && ... .
      *  The number of Subscription Predicates is varied between startValue and endValue with a given increment between each measuring point. **/
     private static void runTime2SubPreds(EvaluationFunction evaluationFunction, String algo, int startValue, int endValue, int increment) {
@@ -91,7 +124,7 @@ public class TestSuite {
 
     /** Prints output in a csv compatible string.
      * */
-    static void printToCSV(String experiment, String algo, Config config, Long[] precomputationTimes, Long[] memoryConsumption, Long[] insertionTimes, Long[] matchingTimes, List<List<Subscription>> matchedSubs, Float[] matchabilities) throws IOException {
+    static void printToCSV(String experiment, String algo, Config config, Long[] precomputationTimes, Long[] memoryConsumption, Long[] insertionTimes, Long[] removalTimes, Long[] matchingTimes, List<List<Subscription>> matchedSubs, Float[] matchabilities, Float[] falsePositiveRates) throws IOException {
         String resultPrecomputationTimes = getCSVStringTimes(experiment, algo, precomputationTimes, config, matchabilities);
         saveToCsv("precomputation_times.csv", resultPrecomputationTimes, config.toHeaderCSVString());
 
@@ -101,16 +134,25 @@ public class TestSuite {
         String resultInsertionTimes = getCSVStringTimes(experiment, algo, insertionTimes, config, matchabilities);
         saveToCsv("insertion_times.csv", resultInsertionTimes, config.toHeaderCSVString());
 
-        String resultMatchingTimes = getCSVStringTimes(experiment, algo, matchingTimes, config, matchabilities);
+        String resultRemovalTimes = getCSVStringTimes(experiment, algo, removalTimes, config, matchabilities);
+        saveToCsv("removal_times.csv", resultRemovalTimes, config.toHeaderCSVString());
+
+        String resultMatchingTimes = getCSVStringTimes(experiment, algo, matchingTimes, config, matchabilities, falsePositiveRates);
         saveToCsv("matching_times.csv", resultMatchingTimes, config.toHeaderCSVString());
     }
 
     static String getCSVStringTimes(String experiment, String algo, Long[] times, Config config, Float[] matchabilities) {
+        return getCSVStringTimes(experiment, algo, times, config, matchabilities, null);
+    }
+
+    /** The false positive rates are only known for the matching times, and are added after the matchability. */
+    static String getCSVStringTimes(String experiment, String algo, Long[] times, Config config, Float[] matchabilities, Float[] falsePositiveRates) {
         StringBuilder sb = new StringBuilder();
         for(int i = 0; i < times.length; i++){
             Long time = times[i];
             Float matchability = matchabilities != null ? matchabilities[i] : null;
-            sb.append(getExperimentString(experiment, algo, time, config, matchability));
+            Float falsePositiveRate = falsePositiveRates != null ? falsePositiveRates[i] : null;
+            sb.append(getExperimentString(experiment, algo, time, config, matchability, falsePositiveRate));
             if(i != times.length -1) {
                 sb.append("\n");
             }
@@ -118,9 +160,9 @@ public class TestSuite {
         return sb.toString();
     }
 
-    private static String getExperimentString(String experiment, String algo, Long time, Config config, Float matchability) {
+    private static String getExperimentString(String experiment, String algo, Long time, Config config, Float matchability, Float falsePositiveRate) {
         String configString = config.toCSVString();
-        return experiment + ";" + algo + ";" + time + ";" + configString + (matchability != null ? ";" + matchability : "");
+        return experiment + ";" + algo + ";" + time + ";" + configString + (matchability != null ? ";" + matchability : "") + (falsePositiveRate != null ? ";" + falsePositiveRate : "");
     }
 
     public static void saveToCsv(String filename, String csvString, String headerString) throws IOException {
@@ -5,7 +5,9 @@ package pub.sub.matching;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -137,10 +139,10 @@ class AppTest {
         assertEquals(expected, actual, "Expected to match differently");
     }
 
- /*   @Test
+    @Test
     void test_REIN_matching_success_1(){
-        Result resultREIN = runMatchingOnAlgo(Config.configTest(), "rein");
-        Result resultLinear = runMatchingOnAlgo(Config.configTest(), "linear");
+        Result resultREIN = isolatedEvaluationOfMatching(Config.configTest(), "rein");
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configTest(), "linear");
         Set<Integer> oneMatchedLine = subList2IdSet(resultREIN.matchedSubs.get(96));
         Set<Integer> expectedLine = subList2IdSet(resultLinear.matchedSubs.get(96));
         assertEquals(expectedLine, oneMatchedLine, "Expected to match differently");
@@ -148,8 +150,8 @@ class AppTest {
 
     @Test
     void test_REIN_matching_success_2(){
-        Result resultREIN = runMatchingOnAlgo(Config.configDebug(), "rein");
-        Result resultLinear = runMatchingOnAlgo(Config.configDebug(), "linear");
+        Result resultREIN = isolatedEvaluationOfMatching(Config.configDebug(), "rein");
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configDebug(), "linear");
         Set<Set<Integer>> expected = new HashSet<>();
         Set<Set<Integer>> actual = new HashSet<>();
         listList2SetSet(resultLinear, expected);
@@ -159,14 +161,74 @@ class AppTest {
 
     @Test
     void test_REIN_matching_success_3(){
-        Result resultREIN = runMatchingOnAlgo(Config.configTest(), "rein");
-        Result resultLinear = runMatchingOnAlgo(Config.configTest(), "linear");
+        Result resultREIN = isolatedEvaluationOfMatching(Config.configTest(), "rein");
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configTest(), "linear");
         Set<Set<Integer>> expected = new HashSet<>();
         Set<Set<Integer>> actual = new HashSet<>();
         listList2SetSet(resultLinear, expected);
         listList2SetSet(resultREIN, actual);
         assertEquals(expected, actual, "Expected to match differently");
-    } */
+    }
+
+    @Test
+    void test_TAMA_matching_success_1(){
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configTest(), "linear");
+        Result resultTAMA = isolatedEvaluationOfMatching(Config.configTest(), "tama");
+        assertEquals(listList2ListSet(resultLinear), listList2ListSet(resultTAMA), "Expected to match differently");
+        for(Float falsePositiveRate : resultTAMA.falsePositiveRates){
+            assertEquals(0f, falsePositiveRate, "Expected no false positives in exact mode");
+        }
+    }
+
+    @Test
+    void test_TAMA_matching_success_2(){
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configDebug(), "linear");
+        Result resultTAMA = isolatedEvaluationOfMatching(Config.configDebug(), "tama");
+        assertEquals(listList2ListSet(resultLinear), listList2ListSet(resultTAMA), "Expected to match differently");
+    }
+
+    @Test
+    void test_TAMAApprox_matching_success_1(){
+        //The approximate matches are the exact ones plus false positives, and the reported rate is the share of those
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configTest(), "linear");
+        Result resultApprox = isolatedEvaluationOfMatching(Config.configTest(), "tama-approx");
+        boolean hasFalsePositives = false;
+        for(int i = 0; i < resultLinear.matchedSubs.size(); i++){
+            Set<Integer> expected = subList2IdSet(resultLinear.matchedSubs.get(i));
+            Set<Integer> actual = subList2IdSet(resultApprox.matchedSubs.get(i));
+            assertTrue(actual.containsAll(expected), "Expected no false negatives");
+            float falsePositiveRate = actual.isEmpty() ? 0 : (actual.size() - expected.size()) / (float) actual.size();
+            assertEquals(falsePositiveRate, resultApprox.falsePositiveRates[i], 1e-6, "Expected the false positive rate of the extra matches");
+            assertEquals(0f, resultLinear.falsePositiveRates[i], "Expected no false positives for linear");
+            hasFalsePositives |= falsePositiveRate > 0;
+        }
+        assertTrue(hasFalsePositives, "Expected wide cells to give false positives");
+    }
+
+    @Test
+    void test_BeTree_matching_success_1(){
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configTest(), "linear");
+        Result resultBeTree = isolatedEvaluationOfMatching(Config.configTest(), "betree");
+        assertEquals(listList2ListSet(resultLinear), listList2ListSet(resultBeTree), "Expected to match differently");
+    }
+
+    @Test
+    void test_BeTree_matching_success_2(){
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configDebug(), "linear");
+        Result resultBeTree = isolatedEvaluationOfMatching(Config.configDebug(), "betree");
+        assertEquals(listList2ListSet(resultLinear), listList2ListSet(resultBeTree), "Expected to match differently");
+    }
+
+    @Test
+    void test_BeTree_matching_success_3(){
+        //Large events with small subscriptions
+        Config config = Config.configDefaultTest();
+        config.setNBR_SUBS(5000);
+        config.setNBR_EVENT_ATTRIBUTES(91);
+        Result resultLinear = isolatedEvaluationOfMatching(config, "linear");
+        Result resultBeTree = isolatedEvaluationOfMatching(config, "betree");
+        assertEquals(listList2ListSet(resultLinear), listList2ListSet(resultBeTree), "Expected to match differently");
+    }
 
     @Test
     void test_AVDDM_matching_success_1(){
@@ -199,6 +261,551 @@ class AppTest {
         assertEquals(expected, actual, "Expected to match differently");
     }
 
+    @Test
+    void test_LinearColumnar_matching_success_1(){
+        Result resultColumnar = isolatedEvaluationOfMatching(Config.configTest(), "linear-columnar");
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configTest(), "linear");
+        Set<Set<Integer>> expected = new HashSet<>();
+        Set<Set<Integer>> actual = new HashSet<>();
+        listList2SetSet(resultLinear, expected);
+        listList2SetSet(resultColumnar, actual);
+        assertEquals(expected, actual, "Expected to match differently");
+    }
+
+    @Test
+    void test_LinearColumnar_matching_success_2(){
+        Result resultColumnar = isolatedEvaluationOfMatching(Config.configDebug(), "linear-columnar");
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configDebug(), "linear");
+        Set<Set<Integer>> expected = new HashSet<>();
+        Set<Set<Integer>> actual = new HashSet<>();
+        listList2SetSet(resultLinear, expected);
+        listList2SetSet(resultColumnar, actual);
+        assertEquals(expected, actual, "Expected to match differently");
+    }
+
+    @Test
+    void test_LinearSimd_matching_success_1(){
+        Result resultSimd = isolatedEvaluationOfMatching(Config.configTest(), "linear-simd");
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configTest(), "linear");
+        Set<Set<Integer>> expected = new HashSet<>();
+        Set<Set<Integer>> actual = new HashSet<>();
+        listList2SetSet(resultLinear, expected);
+        listList2SetSet(resultSimd, actual);
+        assertEquals(expected, actual, "Expected to match differently");
+    }
+
+    @Test
+    void test_LinearSimd_matching_success_2(){
+        //Subs without predicates match every event, and the padding slots after them must not
+        MatchingAlgo simd = Generator.createMatchingAlgo(Config.configDebug(), "linear-simd");
+        for(int i = 0; i < 3; i++){
+            simd.insert(new Subscription(new HashMap<>(), i));
+        }
+        Event event = new Event();
+        event.add(1, 5);
+        List<Subscription> matched = simd.match(event);
+        assertFalse(matched.contains(null), "Expected no padding slot to match");
+        assertEquals(Set.of(0, 1, 2), subList2IdSet(matched), "Expected all subs without predicates to match");
+    }
+
+    @Test
+    void test_AVDDMSorted_matching_success_1(){
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configTest(), "linear");
+        Result resultSorted = isolatedEvaluationOfMatching(Config.configTest(), "avddm-sorted");
+        assertEquals(listList2ListSet(resultLinear), listList2ListSet(resultSorted), "Expected to match differently");
+    }
+
+    @Test
+    void test_AVDDMAdaptive_matching_success_1(){
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configTest(), "linear");
+        Result resultAdaptive = isolatedEvaluationOfMatching(Config.configTest(), "avddm-adaptive");
+        assertEquals(listList2ListSet(resultLinear), listList2ListSet(resultAdaptive), "Expected to match differently");
+    }
+
+    @Test
+    void test_AVDDMAdaptive_matching_success_2(){
+        //Re-split every attribute into equi-depth groups, then remove half of the subs, the matches must stay the same as linear
+        Config config = Config.configTest();
+        Generator generator = new Generator(config.RANDOM_SEED);
+        Event[] events = generator.generateEvents(config.NBR_EVENTS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_EVENT_ATTRIBUTES, config.VAL_DOM);
+        Subscription[] subs = generator.generateSubs(config.NBR_SUBS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUB_PREDICATES, config.VAL_DOM, config.WIDTH, "avddm-adaptive");
+        MatchingAlgo linear = Generator.createMatchingAlgo(config, "linear");
+        MatchingAlgoAVDDM adaptive = (MatchingAlgoAVDDM) Generator.createMatchingAlgo(config, "avddm-adaptive");
+        for(Subscription sub : subs){
+            linear.insert(sub);
+            adaptive.insert(sub);
+        }
+        for(int attribute : adaptive.allAttributes.keySet()){
+            adaptive.resplit(attribute);
+            assertTrue(adaptive.allAttributes.get(attribute).length > 1, "Expected the attribute to be split into several groups");
+        }
+        for(Subscription sub : subs){
+            if(sub.id % 2 == 0){
+                linear.remove(sub.id);
+                adaptive.remove(sub.id);
+            }
+        }
+        for(Event event : events){
+            assertEquals(subList2IdSet(linear.match(event)), subList2IdSet(adaptive.match(event)), "Expected to match differently");
+        }
+    }
+
+    @Test
+    void test_LinearString_shared_scripts_1(){
+        //Subs with the same expression share one script, which is kept until the last of them is removed
+        MatchingAlgoLinearString matcher = new MatchingAlgoLinearString();
+        String expression = "(event.attributeValuePairs[1] > 10 && event.attributeValuePairs[1] < 20)";
+        matcher.insert(new Subscription(expression, 0));
+        matcher.insert(new Subscription(expression, 1));
+        matcher.insert(new Subscription("(event.attributeValuePairs[2] > 10 && event.attributeValuePairs[2] < 20)", 2));
+        assertEquals(2, matcher.scripts.size(), "Expected one script per distinct expression");
+        Event event = new Event();
+        event.add(1, 15);
+        event.add(2, 30);
+        assertEquals(Set.of(0, 1), subList2IdSet(matcher.match(event)), "Expected to match differently");
+        matcher.remove(0);
+        assertEquals(Set.of(1), subList2IdSet(matcher.match(event)), "Expected to match differently");
+        matcher.remove(1);
+        assertEquals(1, matcher.scripts.size(), "Expected the script to be dropped with its last sub");
+    }
+
+    @Test
+    void test_LinearCompiled_matching_success_1(){
+        Result resultString = isolatedEvaluationOfMatching(Config.configDebug(), "linear-string");
+        Result resultCompiled = isolatedEvaluationOfMatching(Config.configDebug(), "linear-string-compiled");
+        assertEquals(listList2ListSet(resultString), listList2ListSet(resultCompiled), "Expected to match differently");
+    }
+
+    @Test
+    void test_LinearCompiled_matching_success_2(){
+        //Compiled and cel evaluation must agree on ||, !, missing attributes and the constructs that fall back to cel
+        List<String> expressions = List.of(
+                "event.attributeValuePairs[1] >= 10 && event.attributeValuePairs[1] <= 20",
+                "(event.attributeValuePairs[1] > 10 || event.attributeValuePairs[3] < 5)",
+                "!(event.attributeValuePairs[2] == 30) || 5 > event.attributeValuePairs[1]",
+                "event.attributeValuePairs[9] > 1 && event.attributeValuePairs[1] < 0",
+                "event.attributeValuePairs[9] > 1 || event.attributeValuePairs[1] > 0",
+                "!(event.attributeValuePairs[9] > 1)",
+                "event.attributeValuePairs[1] + 5 > 20",
+                "true && event.attributeValuePairs[2] != -30");
+        MatchingAlgo string = new MatchingAlgoLinearString();
+        MatchingAlgoLinearCompiled compiled = new MatchingAlgoLinearCompiled();
+        for(int i = 0; i < expressions.size(); i++){
+            string.insert(new Subscription(expressions.get(i), i));
+            compiled.insert(new Subscription(expressions.get(i), i));
+        }
+        assertEquals(1, compiled.fallback.subs.size(), "Expected only the arithmetic to fall back to cel");
+        for(int value : List.of(-1, 5, 15, 25)){
+            Event event = new Event();
+            event.add(1, value);
+            event.add(2, 30);
+            assertEquals(subList2IdSet(string.match(event)), subList2IdSet(compiled.match(event)), "Expected to match differently for value " + value);
+        }
+    }
+
+    @Test
+    void test_LinearShared_matching_success_1(){
+        Result resultString = isolatedEvaluationOfMatching(Config.configDebug(), "linear-string");
+        Result resultShared = isolatedEvaluationOfMatching(Config.configDebug(), "linear-string-shared");
+        assertEquals(listList2ListSet(resultString), listList2ListSet(resultShared), "Expected to match differently");
+    }
+
+    @Test
+    void test_LinearShared_matching_success_2(){
+        //Repeated atoms are interned once and dropped with their last sub, and the results must agree with cel
+        List<String> expressions = List.of(
+                "event.attributeValuePairs[1] > 10 && event.attributeValuePairs[2] == 30",
+                "event.attributeValuePairs[1] > 10 || !(event.attributeValuePairs[9] > 1)",
+                "!(event.attributeValuePairs[1] > 10) && (event.attributeValuePairs[9] > 1 || event.attributeValuePairs[2] == 30)",
+                "event.attributeValuePairs[9] > 1 && event.attributeValuePairs[1] < 0",
+                "event.attributeValuePairs[1] + 5 > 20");
+        MatchingAlgo string = new MatchingAlgoLinearString();
+        MatchingAlgoLinearShared shared = new MatchingAlgoLinearShared();
+        for(int i = 0; i < expressions.size(); i++){
+            string.insert(new Subscription(expressions.get(i), i));
+            shared.insert(new Subscription(expressions.get(i), i));
+        }
+        assertEquals(4, shared.atoms.size(), "Expected one atom per distinct comparison");
+        for(int removed = -1; removed < expressions.size(); removed++){
+            if(removed >= 0){
+                string.remove(removed);
+                shared.remove(removed);
+            }
+            for(int value : List.of(-1, 5, 15, 25)){
+                Event event = new Event();
+                event.add(1, value);
+                event.add(2, 30);
+                assertEquals(subList2IdSet(string.match(event)), subList2IdSet(shared.match(event)), "Expected to match differently for value " + value);
+            }
+        }
+        assertEquals(0, shared.atoms.size(), "Expected the atoms to be dropped with their subs");
+    }
+
+    @Test
+    void test_Hybrid_matching_success_1(){
+        Result resultString = isolatedEvaluationOfMatching(Config.configDebug(), "linear-string");
+        Result resultHybrid = isolatedEvaluationOfMatching(Config.configDebug(), "hybrid-string");
+        assertEquals(listList2ListSet(resultString), listList2ListSet(resultHybrid), "Expected to match differently");
+    }
+
+    @Test
+    void test_Hybrid_matching_success_2(){
+        //Indexed ranges with native and cel residuals, and expressions without any indexable range, must match as in cel, also after removals
+        List<String> expressions = List.of(
+                "event.attributeValuePairs[1] > 10 && event.attributeValuePairs[1] < 20 && event.attributeValuePairs[2] != 30",
+                "(event.attributeValuePairs[1] >= 0 && event.attributeValuePairs[1] <= 50) && event.attributeValuePairs[2] + 1 > 30",
+                "event.attributeValuePairs[1] > 10 || event.attributeValuePairs[2] < 5",
+                "event.attributeValuePairs[1] < 20 && (event.attributeValuePairs[2] == 30 || event.attributeValuePairs[9] > 1)",
+                "event.attributeValuePairs[1] >= 5 && event.attributeValuePairs[1] <= 25 && event.attributeValuePairs[9] > 1");
+        Config config = Config.configDebug();
+        MatchingAlgo string = new MatchingAlgoLinearString();
+        MatchingAlgo hybrid = Generator.createMatchingAlgo(config, "hybrid-string");
+        for(int i = 0; i < expressions.size(); i++){
+            string.insert(new Subscription(expressions.get(i), i));
+            hybrid.insert(new Subscription(expressions.get(i), i));
+        }
+        for(int removed = -1; removed < expressions.size(); removed++){
+            if(removed >= 0){
+                string.remove(removed);
+                hybrid.remove(removed);
+            }
+            for(int value : List.of(-1, 5, 15, 25)){
+                Event event = new Event();
+                event.add(1, value);
+                event.add(2, 30);
+                assertEquals(subList2IdSet(string.match(event)), subList2IdSet(hybrid.match(event)), "Expected to match differently for value " + value);
+            }
+        }
+    }
+
+    @Test
+    void test_Hybrid_matching_success_3(){
+        //A sub whose cel residual does not compile never matches, as in linear-string, whether it has indexed ranges or not
+        List<String> expressions = List.of(
+                "event.attributeValuePairs[1] >= 0 && event.attributeValuePairs[1] <= 9 && undeclared > 3",
+                "undeclared > 3 || event.attributeValuePairs[1] > 1",
+                "event.attributeValuePairs[1] >= 0 && event.attributeValuePairs[1] <= 9");
+        Config config = Config.configDebug();
+        MatchingAlgo string = new MatchingAlgoLinearString();
+        MatchingAlgo hybrid = Generator.createMatchingAlgo(config, "hybrid-string");
+        for(int i = 0; i < expressions.size(); i++){
+            string.insert(new Subscription(expressions.get(i), i));
+            hybrid.insert(new Subscription(expressions.get(i), i));
+        }
+        Event event = new Event();
+        event.add(1, 5);
+        assertEquals(Set.of(2), subList2IdSet(string.match(event)), "Expected only the sub that compiles to match");
+        assertEquals(subList2IdSet(string.match(event)), subList2IdSet(hybrid.match(event)), "Expected to match differently");
+        hybrid.remove(0);
+        hybrid.remove(1);
+        assertEquals(Set.of(2), subList2IdSet(hybrid.match(event)), "Expected to match differently after removals");
+    }
+
+    @Test
+    void test_GemFrozen_matching_success_1(){
+        //Match on the frozen tree, then remove half of the subs so the frozen tree is stale, and freeze again
+        Config config = Config.configTest();
+        Generator generator = new Generator(config.RANDOM_SEED);
+        Event[] events = generator.generateEvents(config.NBR_EVENTS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_EVENT_ATTRIBUTES, config.VAL_DOM);
+        Subscription[] subs = generator.generateSubs(config.NBR_SUBS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUB_PREDICATES, config.VAL_DOM, config.WIDTH, "gem-frozen");
+        MatchingAlgo linear = Generator.createMatchingAlgo(config, "linear");
+        MatchingAlgoGemTree frozen = (MatchingAlgoGemTree) Generator.createMatchingAlgo(config, "gem-frozen");
+        for(Subscription sub : subs){
+            linear.insert(sub);
+            frozen.insert(sub);
+        }
+        frozen.freeze();
+        for(Event event : events){
+            assertEquals(subList2IdSet(linear.match(event)), subList2IdSet(frozen.match(event)), "Expected to match differently");
+        }
+        for(Subscription sub : subs){
+            if(sub.id % 2 == 0){
+                linear.remove(sub.id);
+                frozen.remove(sub.id);
+            }
+        }
+        for(Event event : events){
+            assertEquals(subList2IdSet(linear.match(event)), subList2IdSet(frozen.match(event)), "Expected to match differently");
+        }
+        frozen.freeze();
+        for(Event event : events){
+            assertEquals(subList2IdSet(linear.match(event)), subList2IdSet(frozen.match(event)), "Expected to match differently");
+        }
+    }
+
+    @Test
+    void test_GemBulkLoad_matching_success_1(){
+        //Bulk-load the subs, then remove half of them and insert them again, the matches must stay the same as linear
+        Config config = Config.configTest();
+        Generator generator = new Generator(config.RANDOM_SEED);
+        Event[] events = generator.generateEvents(config.NBR_EVENTS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_EVENT_ATTRIBUTES, config.VAL_DOM);
+        Subscription[] subs = generator.generateSubs(config.NBR_SUBS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUB_PREDICATES, config.VAL_DOM, config.WIDTH, "gem");
+        MatchingAlgo linear = Generator.createMatchingAlgo(config, "linear");
+        for(Subscription sub : subs){
+            linear.insert(sub);
+        }
+        for(boolean isRanked : List.of(true, false)){
+            MatchingAlgo bulkLoaded = new MatchingAlgoGemTree(config.NBR_SUBS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUB_PREDICATES, config.VAL_DOM, config.GEMTree_NBR_CELLS, config.GEMTree_SPLIT_THRESHOLD, config.GEMTree_INCREASE_BUCKET_SIZE_FACTOR, config.GEMTree_ALPHA, isRanked, false, subs);
+            for(Event event : events){
+                assertEquals(subList2IdSet(linear.match(event)), subList2IdSet(bulkLoaded.match(event)), "Expected to match differently");
+            }
+            for(Subscription sub : subs){
+                if(sub.id % 2 == 0){
+                    bulkLoaded.remove(sub.id);
+                }
+            }
+            for(Subscription sub : subs){
+                if(sub.id % 2 == 0){
+                    bulkLoaded.insert(sub);
+                }
+            }
+            for(Event event : events){
+                assertEquals(subList2IdSet(linear.match(event)), subList2IdSet(bulkLoaded.match(event)), "Expected to match differently");
+            }
+        }
+    }
+
+    @Test
+    void test_MaemaAdaptive_matching_success_1(){
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configTest(), "linear");
+        Result resultAdaptive = isolatedEvaluationOfMatching(Config.configTest(), "maema-adaptive");
+        assertEquals(listList2ListSet(resultLinear), listList2ListSet(resultAdaptive), "Expected to match differently");
+    }
+
+    @Test
+    void test_MaemaAdaptive_matching_success_2(){
+        //Re-bucket and re-tune with parameters that differ from the config, the matches must stay the same
+        Config config = Config.configTest();
+        Generator generator = new Generator(config.RANDOM_SEED);
+        Event[] events = generator.generateEvents(config.NBR_EVENTS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_EVENT_ATTRIBUTES, config.VAL_DOM);
+        Subscription[] subs = generator.generateSubs(config.NBR_SUBS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUB_PREDICATES, config.VAL_DOM, config.WIDTH, "maema-adaptive");
+        MatchingAlgo linear = Generator.createMatchingAlgo(config, "linear");
+        MatchingAlgoMaema adaptive = (MatchingAlgoMaema) Generator.createMatchingAlgo(config, "maema-adaptive");
+        for(Subscription sub : subs){
+            linear.insert(sub);
+            adaptive.insert(sub);
+        }
+        for(int nbrBuckets : List.of(1, 3, 7)){
+            adaptive.rebuild(nbrBuckets, 0.1, 2);
+            for(Event event : events){
+                assertEquals(subList2IdSet(linear.match(event)), subList2IdSet(adaptive.match(event)), "Expected to match differently with " + nbrBuckets + " buckets");
+            }
+            adaptive.retune();
+            for(Event event : events){
+                assertEquals(subList2IdSet(linear.match(event)), subList2IdSet(adaptive.match(event)), "Expected to match differently after re-tune");
+            }
+        }
+    }
+
+    @Test
+    void test_Sharded_matching_success_1(){
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configTest(), "linear");
+        Config config = Config.configTest();
+        config.setNBR_SHARDS(3);
+        for(String algo : List.of("sharded-linear", "sharded-maema", "sharded-gem", "sharded-avddm")){
+            Result resultSharded = isolatedEvaluationOfMatching(config, algo);
+            assertEquals(listList2ListSet(resultLinear), listList2ListSet(resultSharded), "Expected to match differently for " + algo);
+        }
+    }
+
+    @Test
+    void test_Concurrent_matching_success_1() throws InterruptedException {
+        Config config = Config.configDebug();
+        for(String algo : List.of("concurrent-maema", "concurrent-gem", "concurrent-avddm")){
+            Generator generator = new Generator(config.RANDOM_SEED);
+            Event[] events = generator.generateEvents(config.NBR_EVENTS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_EVENT_ATTRIBUTES, config.VAL_DOM);
+            Subscription[] subs = generator.generateSubs(config.NBR_SUBS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUB_PREDICATES, config.VAL_DOM, config.WIDTH, algo);
+            MatchingAlgo matcher = Generator.createMatchingAlgo(config, algo);
+            for(Subscription sub : subs){
+                matcher.insert(sub);
+            }
+            List<Set<Integer>> allMatches = new ArrayList<>();
+            for(Event event : events){
+                allMatches.add(subList2IdSet(matcher.match(event)));
+            }
+            //Subs with an odd id are removed and inserted again while two threads match. Subs with an even id must always match
+            List<Throwable> failures = new ArrayList<>();
+            Thread writer = new Thread(() -> {
+                for(int round = 0; round < 20; round++){
+                    for(Subscription sub : subs){
+                        if(sub.id % 2 == 1){
+                            matcher.remove(sub.id);
+                            matcher.insert(sub);
+                        }
+                    }
+                }
+            });
+            List<Thread> readers = new ArrayList<>();
+            for(int r = 0; r < 2; r++){
+                readers.add(new Thread(() -> {
+                    try {
+                        while(writer.isAlive()){
+                            for(int i = 0; i < events.length; i++){
+                                Set<Integer> matched = subList2IdSet(matcher.match(events[i]));
+                                Set<Integer> expectedEven = new HashSet<>(allMatches.get(i));
+                                expectedEven.removeIf(subId -> subId % 2 == 1);
+                                assertTrue(allMatches.get(i).containsAll(matched), "Expected no other matches for " + algo);
+                                assertTrue(matched.containsAll(expectedEven), "Expected untouched subs to match for " + algo);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures){
+                            failures.add(e);
+                        }
+                    }
+                }));
+            }
+            writer.start();
+            for(Thread reader : readers){
+                reader.start();
+            }
+            writer.join();
+            for(Thread reader : readers){
+                reader.join();
+            }
+            assertEquals(List.of(), failures, "Expected no failures while matching concurrently for " + algo);
+        }
+    }
+
+    @Test
+    void test_remove_matching_success_1(){
+        Config config = Config.configDebug();
+        for(String algo : List.of("linear", "linear-string", "linear-string-compiled", "linear-string-shared", "hybrid-string", "linear-columnar", "linear-simd", "maema", "rein", "tama", "tama-approx", "betree", "gem", "gemUnRanked", "gem-frozen", "avddm", "avddm-sorted", "sharded-gem")){
+            Generator generator = new Generator(config.RANDOM_SEED);
+            Event[] events = generator.generateEvents(config.NBR_EVENTS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_EVENT_ATTRIBUTES, config.VAL_DOM);
+            Subscription[] subs = generator.generateSubs(config.NBR_SUBS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUB_PREDICATES, config.VAL_DOM, config.WIDTH, algo);
+            MatchingAlgo matcher = Generator.createMatchingAlgo(config, algo);
+            for(Subscription sub : subs){
+                matcher.insert(sub);
+            }
+            //Expect the same matches as before, except for the removed subs with an even id
+            List<Set<Integer>> expected = new ArrayList<>();
+            for(Event event : events){
+                Set<Integer> matched = subList2IdSet(matcher.match(event));
+                matched.removeIf(subId -> subId % 2 == 0);
+                expected.add(matched);
+            }
+            for(Subscription sub : subs){
+                if(sub.id % 2 == 0){
+                    matcher.remove(sub.id);
+                }
+            }
+            List<Set<Integer>> actual = new ArrayList<>();
+            for(Event event : events){
+                actual.add(subList2IdSet(matcher.match(event)));
+            }
+            assertEquals(expected, actual, "Expected to match differently for " + algo);
+        }
+    }
+
+    @Test
+    void test_remove_matching_success_2(){
+        Config config = Config.configTest();
+        for(String algo : List.of("maema", "rein", "tama", "betree", "gem", "gemUnRanked", "avddm", "avddm-sorted")){
+            Generator generator = new Generator(config.RANDOM_SEED);
+            Event[] events = generator.generateEvents(config.NBR_EVENTS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_EVENT_ATTRIBUTES, config.VAL_DOM);
+            Subscription[] subs = generator.generateSubs(config.NBR_SUBS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUB_PREDICATES, config.VAL_DOM, config.WIDTH, algo);
+            MatchingAlgo matcher = Generator.createMatchingAlgo(config, algo);
+            for(Subscription sub : subs){
+                matcher.insert(sub);
+            }
+            //Removing every subscription should leave nothing to match
+            for(Subscription sub : subs){
+                matcher.remove(sub.id);
+            }
+            for(Event event : events){
+                assertTrue(matcher.match(event).isEmpty(), "Expected no matches for " + algo);
+            }
+        }
+    }
+
+    @Test
+    void test_insertAll_matching_success_1(){
+        //Insert the first half one by one and the rest in bulk, the matches must stay the same as linear
+        Config config = Config.configTest();
+        Result resultLinear = isolatedEvaluationOfMatching(config, "linear");
+        for(String algo : List.of("maema", "maema-adaptive", "rein", "gem", "avddm", "avddm-sorted", "avddm-adaptive", "sharded-avddm", "concurrent-maema")){
+            Generator generator = new Generator(config.RANDOM_SEED);
+            Event[] events = generator.generateEvents(config.NBR_EVENTS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_EVENT_ATTRIBUTES, config.VAL_DOM);
+            Subscription[] subs = generator.generateSubs(config.NBR_SUBS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUB_PREDICATES, config.VAL_DOM, config.WIDTH, algo);
+            MatchingAlgo matcher = Generator.createMatchingAlgo(config, algo);
+            for(int i = 0; i < subs.length / 2; i++){
+                matcher.insert(subs[i]);
+            }
+            matcher.insertAll(Arrays.copyOfRange(subs, subs.length / 2, subs.length));
+            for(int i = 0; i < events.length; i++){
+                assertEquals(subList2IdSet(resultLinear.matchedSubs.get(i)), subList2IdSet(matcher.match(events[i])), "Expected to match differently for " + algo);
+            }
+        }
+    }
+
+    @Test
+    void test_batch_matching_success_1(){
+        Result resultLinear = isolatedEvaluationOfMatching(Config.configTest(), "linear");
+        Config config = Config.configTest();
+        config.setMATCH_BATCH_SIZE(16);
+        for(String algo : List.of("linear", "linear-columnar", "linear-simd", "maema", "maema-adaptive", "gem", "gemUnRanked", "avddm")){
+            Result resultBatch = isolatedEvaluationOfMatching(config, algo);
+            assertEquals(listList2ListSet(resultLinear), listList2ListSet(resultBatch), "Expected to match differently for " + algo);
+        }
+    }
+
+    @Test
+    void test_batch_matching_success_2(){
+        Config config = Config.configDebug();
+        for(String algo : List.of("linear-string", "maema", "gem", "avddm", "sharded-linear-string")){
+            Result resultSingle = isolatedEvaluationOfMatching(config, algo);
+            config.setMATCH_BATCH_SIZE(7);
+            Result resultBatch = isolatedEvaluationOfMatching(config, algo);
+            config.setMATCH_BATCH_SIZE(1);
+            assertEquals(listList2ListSet(resultSingle), listList2ListSet(resultBatch), "Expected to match differently for " + algo);
+        }
+    }
+
+    @Test
+    void test_sink_matching_success_1(){
+        Config config = Config.configDebug();
+        for(String algo : List.of("linear", "linear-string", "linear-columnar", "linear-simd", "maema", "gem", "gemUnRanked", "avddm", "avddm-sorted", "sharded-gem")){
+            Generator generator = new Generator(config.RANDOM_SEED);
+            Event[] events = generator.generateEvents(config.NBR_EVENTS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_EVENT_ATTRIBUTES, config.VAL_DOM);
+            Subscription[] subs = generator.generateSubs(config.NBR_SUBS, config.NBR_TOTAL_ATTRIBUTES, config.NBR_SUB_PREDICATES, config.VAL_DOM, config.WIDTH, algo);
+            MatchingAlgo matcher = Generator.createMatchingAlgo(config, algo);
+            for(Subscription sub : subs){
+                matcher.insert(sub);
+            }
+            for(Event event : events){
+                Set<Integer> expected = subList2IdSet(matcher.match(event));
+                Set<Integer> actual = new HashSet<>();
+                matcher.match(event, actual::add);
+                assertEquals(expected, actual, "Expected to match differently for " + algo);
+                assertEquals(expected.size(), matcher.countMatches(event), "Expected to count differently for " + algo);
+            }
+        }
+    }
+
+    @Test
+    void test_primitive_event_success_1(){
+        //Both a dense event and a sparse event with an attribute id above the dense limit
+        for(int largestAttribute : List.of(90, PrimitiveEvent.MAX_DENSE_ATTRIBUTE + 10)){
+            Event event = new Event();
+            event.add(largestAttribute, 7);
+            event.add(3, 500);
+            event.add(64, 0);
+            PrimitiveEvent primitiveEvent = event.toPrimitive();
+            assertArrayEquals(new int[]{3, 64, largestAttribute}, primitiveEvent.attributes);
+            assertArrayEquals(new int[]{500, 0, 7}, primitiveEvent.values);
+            assertTrue(primitiveEvent.contains(64));
+            assertEquals(7, primitiveEvent.get(largestAttribute));
+            assertFalse(primitiveEvent.contains(4));
+            assertFalse(primitiveEvent.contains(-1));
+            assertFalse(primitiveEvent.contains(largestAttribute + 1));
+        }
+    }
+
+    private List<Set<Integer>> listList2ListSet(Result result) {
+        return result.matchedSubs.stream().map(this::subList2IdSet).collect(Collectors.toList());
+    }
+
     private void listList2SetSet(Result result, Set<Set<Integer>> resultSet) {
         for (List<Subscription> ls : result.matchedSubs){
             resultSet.add(subList2IdSet(ls));